@@ -0,0 +1,120 @@
+package marbleMVC;
+
+/**
+ * This is the enum type that represents the shape of the game board. Every board is laid out on a
+ * square grid of armSize * 2 + 1 rows and columns; the shape decides which cells of the grid can
+ * hold a marble and in which directions a marble can jump.
+ */
+public enum BoardShape {
+
+  /**
+   * The English cross: a square grid with a square of forbidden cells cut out of every corner.
+   */
+  ENGLISH(false) {
+    @Override
+    boolean isValid(int armSize, int row, int col) {
+      return cornerDistance(armSize, row, col) < 0;
+    }
+  },
+
+  /**
+   * The European board: the English cross with the inner corners of the forbidden squares filled
+   * in, which gives the board eight sides.
+   */
+  EUROPEAN(false) {
+    @Override
+    boolean isValid(int armSize, int row, int col) {
+      return cornerDistance(armSize, row, col) < (armSize + 1) / 2 - 1;
+    }
+  },
+
+  /**
+   * The triangular board: the lower left half of the grid including the diagonal. Marbles can also
+   * jump along the diagonal, so every cell has six neighbors as on a triangle. The side of the
+   * triangle is armSize * 2 + 1.
+   */
+  TRIANGULAR(true) {
+    @Override
+    boolean isValid(int armSize, int row, int col) {
+      return col <= row;
+    }
+
+    @Override
+    void checkArmSize(int armSize) throws IllegalArgumentException {
+      if (armSize < 2) {
+        throw new IllegalArgumentException("The arm thickness must be at least 2.");
+      }
+    }
+  };
+
+  private final int[][] directions;
+
+  /**
+   * This is the constructor of the BoardShape enum type.
+   *
+   * @param diagonal if marbles can jump along the diagonal from the top left to the bottom right.
+   */
+  BoardShape(boolean diagonal) {
+
+    int[][] orthogonal = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    int[][] withDiagonal = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {1, 1}};
+    this.directions = diagonal ? withDiagonal : orthogonal;
+  }
+
+  /**
+   * Determine if the cell of the grid can hold a marble. The position must be inside the grid.
+   *
+   * @param armSize the arm thickness of the board.
+   * @param row the row of the cell.
+   * @param col the column of the cell.
+   * @return true if the cell can hold a marble, false if it is forbidden.
+   */
+  abstract boolean isValid(int armSize, int row, int col);
+
+  /**
+   * Check that the arm thickness is allowed for this shape.
+   *
+   * @param armSize the arm thickness of the board.
+   * @throws IllegalArgumentException if the arm thickness is not allowed.
+   */
+  void checkArmSize(int armSize) throws IllegalArgumentException {
+
+    if (armSize < 3 || armSize % 2 == 0) {
+      throw new IllegalArgumentException("The arm thickness must be a positive odd integer.");
+    }
+  }
+
+  /**
+   * Return the steps from a cell to its neighbors. A marble jumps over the neighbor one step away
+   * and lands two steps away.
+   *
+   * @return the row and column steps to the neighbors of a cell.
+   */
+  int[][] getDirections() {
+    return directions;
+  }
+
+  /**
+   * Return how far inside one of the forbidden corner squares of the English cross a cell is. The
+   * distance is 0 at the inner corner of a square and grows towards the corner of the grid; it is
+   * negative for the cells outside the squares.
+   *
+   * @param armSize the arm thickness of the board.
+   * @param row the row of the cell.
+   * @param col the column of the cell.
+   * @return the distance from the inner corner of the forbidden square, or -1 outside the squares.
+   */
+  private static int cornerDistance(int armSize, int row, int col) {
+
+    int forbidSize = (armSize + 1) / 2;
+    int rowDistance = row < forbidSize ? forbidSize - 1 - row : row - forbidSize - armSize;
+    int colDistance = col < forbidSize ? forbidSize - 1 - col : col - forbidSize - armSize;
+
+    if (rowDistance < 0 || colDistance < 0) {
+      return -1;
+    }
+
+    return rowDistance + colDistance;
+  }
+
+}
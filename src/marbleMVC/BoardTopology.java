@@ -0,0 +1,333 @@
+package marbleMVC;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents the geometry of a game board, computed once for every shape and arm
+ * thickness and shared by all the games on such a board. The cells that can hold a marble are
+ * numbered from 0 in row-major order, and every possible jump is stored as a (from, over, to)
+ * triple of cell numbers, so checking and finding moves only needs array lookups.
+ */
+public final class BoardTopology {
+
+  private static final Map<Long, BoardTopology> CACHE = new ConcurrentHashMap<>();
+
+  private final BoardShape shape;
+  private final int armSize;
+  private final int boardSize;
+  private final int[] cellOf;
+  private final int[] rowOf;
+  private final int[] colOf;
+  private volatile int[] triples;
+  private int[] firstTriple;
+  private volatile int[][] symmetries;
+
+  /**
+   * This is the constructor of the BoardTopology class. It computes the cells of the board; the
+   * jumps are computed when they are needed first, which very large boards played as a
+   * MarbleBitBoard never do.
+   *
+   * @param shape the shape of the board.
+   * @param armSize the arm thickness of the board.
+   */
+  private BoardTopology(BoardShape shape, int armSize) {
+
+    this.shape = shape;
+    this.armSize = armSize;
+    this.boardSize = armSize * 2 + 1;
+    this.cellOf = new int[boardSize * boardSize];
+
+    int cells = 0;
+    for (int i = 0; i < boardSize; i++) {
+      for (int j = 0; j < boardSize; j++) {
+        cellOf[i * boardSize + j] = shape.isValid(armSize, i, j) ? cells++ : -1;
+      }
+    }
+
+    this.rowOf = new int[cells];
+    this.colOf = new int[cells];
+    for (int i = 0; i < cellOf.length; i++) {
+      if (cellOf[i] >= 0) {
+        rowOf[cellOf[i]] = i / boardSize;
+        colOf[cellOf[i]] = i % boardSize;
+      }
+    }
+  }
+
+  /**
+   * Compute the jumps of the board the first time they are needed. The jumps are found in two
+   * passes, one to count them and one to store them, and the jumps from every cell are stored next
+   * to each other.
+   */
+  private synchronized void buildJumps() {
+
+    if (triples != null) {
+      return;
+    }
+
+    int cells = getCellCount();
+    int[] first = new int[cells + 1];
+
+    for (int cell = 0; cell < cells; cell++) {
+      first[cell + 1] = first[cell];
+      for (int[] direction : shape.getDirections()) {
+        if (jumpTo(cell, direction) >= 0) {
+          first[cell + 1]++;
+        }
+      }
+    }
+
+    int[] jumps = new int[3 * first[cells]];
+    int t = 0;
+
+    for (int cell = 0; cell < cells; cell++) {
+      for (int[] direction : shape.getDirections()) {
+        int to = jumpTo(cell, direction);
+        if (to >= 0) {
+          jumps[t++] = cell;
+          jumps[t++] = indexOf(rowOf[cell] + direction[0], colOf[cell] + direction[1]);
+          jumps[t++] = to;
+        }
+      }
+    }
+
+    this.firstTriple = first;
+    this.triples = jumps;
+  }
+
+  /**
+   * Return the cell a marble lands on when it jumps from the given cell in the given direction, or
+   * -1 if the jump leaves the board.
+   *
+   * @param cell the number of the cell to jump from.
+   * @param direction the row and column step of the direction.
+   * @return the number of the cell to land on, or -1 if there is none.
+   */
+  private int jumpTo(int cell, int[] direction) {
+
+    if (indexOf(rowOf[cell] + direction[0], colOf[cell] + direction[1]) < 0) {
+      return -1;
+    }
+
+    return indexOf(rowOf[cell] + 2 * direction[0], colOf[cell] + 2 * direction[1]);
+  }
+
+  /**
+   * Return the topology of the board with the given shape and arm thickness. Topologies are cached,
+   * so all the games on the same board share one.
+   *
+   * @param shape the shape of the board.
+   * @param armSize the arm thickness of the board.
+   * @return the topology of the board.
+   * @throws IllegalArgumentException if the shape is null, the arm thickness is not allowed for it
+   *     or the grid of the board would not fit in an array.
+   */
+  public static BoardTopology of(BoardShape shape, int armSize) throws IllegalArgumentException {
+
+    if (shape == null) {
+      throw new IllegalArgumentException("The shape is invalid.");
+    }
+
+    shape.checkArmSize(armSize);
+
+    long boardSize = 2L * armSize + 1;
+    if (boardSize * boardSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The arm thickness is too large.");
+    }
+
+    long key = (long) shape.ordinal() << 32 | armSize;
+    return CACHE.computeIfAbsent(key, k -> new BoardTopology(shape, armSize));
+  }
+
+  /**
+   * Return the shape of the board.
+   *
+   * @return the shape of the board.
+   */
+  public BoardShape getShape() {
+    return shape;
+  }
+
+  /**
+   * Return the arm thickness of the board.
+   *
+   * @return the arm thickness of the board.
+   */
+  public int getArmSize() {
+    return armSize;
+  }
+
+  /**
+   * Return the number of rows and columns of the grid of the board.
+   *
+   * @return the number of rows and columns of the grid.
+   */
+  public int getBoardSize() {
+    return boardSize;
+  }
+
+  /**
+   * Return the number of cells that can hold a marble.
+   *
+   * @return the number of cells that can hold a marble.
+   */
+  public int getCellCount() {
+    return rowOf.length;
+  }
+
+  /**
+   * Return the number of the cell at the given position, or -1 if the position is forbidden or
+   * outside the grid.
+   *
+   * @param row the row of the cell.
+   * @param col the column of the cell.
+   * @return the number of the cell, or -1 if there is none.
+   */
+  public int indexOf(int row, int col) {
+
+    if (row < 0 || row >= boardSize || col < 0 || col >= boardSize) {
+      return -1;
+    }
+
+    return cellOf[row * boardSize + col];
+  }
+
+  /**
+   * Return the row of the cell with the given number.
+   *
+   * @param cell the number of the cell.
+   * @return the row of the cell.
+   */
+  public int rowOf(int cell) {
+    return rowOf[cell];
+  }
+
+  /**
+   * Return the column of the cell with the given number.
+   *
+   * @param cell the number of the cell.
+   * @return the column of the cell.
+   */
+  public int colOf(int cell) {
+    return colOf[cell];
+  }
+
+  /**
+   * Return all the jumps of the board as a flat array of (from, over, to) cell numbers. Jump t is
+   * stored at 3 * t, 3 * t + 1 and 3 * t + 2. The array is shared and must not be changed.
+   *
+   * @return all the jumps of the board.
+   */
+  int[] getTriples() {
+
+    if (triples == null) {
+      buildJumps();
+    }
+
+    return triples;
+  }
+
+  /**
+   * Return the number of the first jump from every cell. The jumps from cell c are the jumps from
+   * number first[c] up to, but not including, first[c + 1]. The array is shared and must not be
+   * changed.
+   *
+   * @return the number of the first jump from every cell, followed by the number of jumps.
+   */
+  int[] getFirstTriples() {
+
+    if (triples == null) {
+      buildJumps();
+    }
+
+    return firstTriple;
+  }
+
+  /**
+   * Return the symmetries of the board as permutations of its cells. Symmetry s moves the marble on
+   * cell c to cell symmetries[s][c], and turns every jump of the board into another jump. The first
+   * symmetry is the identity. The arrays are shared and must not be changed.
+   *
+   * @return the symmetries of the board.
+   */
+  int[][] getSymmetries() {
+
+    if (symmetries == null) {
+      buildSymmetries();
+    }
+
+    return symmetries;
+  }
+
+  /**
+   * Compute the symmetries of the board the first time they are needed. The candidates are the
+   * eight rotations and reflections of the square grid and the six symmetries of the triangle, and
+   * only those that keep every cell and every jump on the board are kept.
+   */
+  private synchronized void buildSymmetries() {
+
+    if (symmetries != null) {
+      return;
+    }
+
+    // Every candidate maps (row, col) to (a * row + b * col + c, d * row + e * col + f).
+    int last = boardSize - 1;
+    int[][] candidates = {
+        {1, 0, 0, 0, 1, 0}, {0, 1, 0, -1, 0, last}, {-1, 0, last, 0, -1, last},
+        {0, -1, last, 1, 0, 0}, {1, 0, 0, 0, -1, last}, {-1, 0, last, 0, 1, 0},
+        {0, 1, 0, 1, 0, 0}, {0, -1, last, -1, 0, last}, {1, 0, 0, 1, -1, 0},
+        {-1, 1, last, 0, 1, 0}, {0, -1, last, 1, -1, 0}, {-1, 1, last, -1, 0, last}};
+
+    List<int[]> found = new ArrayList<>();
+
+    for (int[] map : candidates) {
+      int[] permutation = new int[getCellCount()];
+      boolean valid = true;
+
+      for (int cell = 0; cell < permutation.length && valid; cell++) {
+        int row = map[0] * rowOf[cell] + map[1] * colOf[cell] + map[2];
+        int col = map[3] * rowOf[cell] + map[4] * colOf[cell] + map[5];
+        permutation[cell] = indexOf(row, col);
+        valid = permutation[cell] >= 0;
+      }
+
+      if (valid && keepsJumps(permutation) && found.stream().noneMatch(
+          p -> Arrays.equals(p, permutation))) {
+        found.add(permutation);
+      }
+    }
+
+    this.symmetries = found.toArray(new int[0][]);
+  }
+
+  /**
+   * Determine if a permutation of the cells turns every jump of the board into another jump.
+   *
+   * @param permutation the permutation of the cells.
+   * @return true if every jump is turned into a jump, false otherwise.
+   */
+  private boolean keepsJumps(int[] permutation) {
+
+    int[] jumps = getTriples();
+    int[] first = getFirstTriples();
+
+    for (int t = 0; t < jumps.length; t += 3) {
+      int from = permutation[jumps[t]];
+      boolean kept = false;
+      for (int u = first[from]; u < first[from + 1] && !kept; u++) {
+        kept = jumps[3 * u + 1] == permutation[jumps[t + 1]]
+            && jumps[3 * u + 2] == permutation[jumps[t + 2]];
+      }
+      if (!kept) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+}
@@ -0,0 +1,144 @@
+package marbleMVC;
+
+/**
+ * This class represents a MarbleController that measures another MarbleController. Every call is
+ * passed on to the wrapped controller; the time of recordPosition is added to a MarbleMetrics object
+ * and emitted as a flight recorder event. It includes marking the changed cells of the view, but not
+ * drawing them, which the view does later, at most once per frame, and measures on its own when it
+ * is given the same MarbleMetrics object.
+ *
+ * The view is given to this controller instead of the wrapped one, so the clicks of the player go
+ * through the measurements.
+ */
+public class InstrumentedMarbleController implements MarbleController {
+
+  private final MarbleController controller;
+  private final MarbleView view;
+  private final MarbleMetrics metrics;
+
+  /**
+   * This is the constructor of the InstrumentedMarbleController class.
+   *
+   * @param controller the controller to measure.
+   * @param view the view of the controller.
+   * @param metrics the metrics to update.
+   * @throws IllegalArgumentException if any of the arguments is null.
+   */
+  public InstrumentedMarbleController(MarbleController controller, MarbleView view,
+      MarbleMetrics metrics) throws IllegalArgumentException {
+
+    if (controller == null) {
+      throw new IllegalArgumentException("The controller is invalid.");
+    }
+
+    if (view == null) {
+      throw new IllegalArgumentException("The view is invalid.");
+    }
+
+    if (metrics == null) {
+      throw new IllegalArgumentException("The metrics are invalid.");
+    }
+
+    this.controller = controller;
+    this.view = view;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Execute a single game of Marble Solitaire with this controller in the view.
+   */
+  @Override
+  public void playGame() {
+
+    view.initializeGame(this);
+
+  }
+
+  /**
+   * Return the armSize of this game;
+   *
+   * @return the armSize of this game.
+   */
+  @Override
+  public int getArmSize() {
+    return controller.getArmSize();
+  }
+
+  /**
+   * Return the CellStatus (enum type) of the specific cell.
+   *
+   * @param row the row of the cell.
+   * @param col the column of the cell.
+   * @return the CellStatus of the specific cell.
+   */
+  @Override
+  public CellStatus getCellStatus(int row, int col) {
+    return controller.getCellStatus(row, col);
+  }
+
+  /**
+   * Record the position being clicked, and measure the time until the view is updated.
+   *
+   * @param row the row index of the cell that is clicked.
+   * @param col the column index of the cell that is clicked.
+   */
+  @Override
+  public void recordPosition(int row, int col) {
+
+    MarbleEvents.RecordPosition event = new MarbleEvents.RecordPosition();
+    event.begin();
+    long start = System.nanoTime();
+
+    try {
+      controller.recordPosition(row, col);
+    }
+
+    finally {
+      metrics.getRecordPositionNanos().record(System.nanoTime() - start);
+      event.row = row;
+      event.col = col;
+      event.commit();
+    }
+  }
+
+  /**
+   * Pass the text message for the scoreboard in view depending on the game status.
+   *
+   * @return a string that represents the game status for view.
+   */
+  @Override
+  public String passToScoreBoard() {
+    return controller.passToScoreBoard();
+  }
+
+  /**
+   * Update the game board for view after a successful move.
+   */
+  @Override
+  public void updateBoard() {
+    controller.updateBoard();
+  }
+
+  /**
+   * Apply a sequence of moves at once and update the view once.
+   *
+   * @param moves the packed moves to apply, four numbers per move.
+   * @return -1 if every move was made, or the number of the first move that is not possible.
+   * @throws IllegalArgumentException if the array is null or its length is not a multiple of 4.
+   */
+  @Override
+  public int applyMoves(int[] moves) throws IllegalArgumentException {
+    return controller.applyMoves(moves);
+  }
+
+  /**
+   * Return the recording of all the moves made in this game so far.
+   *
+   * @return the recording of this game.
+   */
+  @Override
+  public MarbleReplay getReplay() {
+    return controller.getReplay();
+  }
+
+}
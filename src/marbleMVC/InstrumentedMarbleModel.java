@@ -0,0 +1,166 @@
+package marbleMVC;
+
+/**
+ * This class represents a MarbleModel that measures another MarbleModel. Every call is passed on
+ * to the wrapped model; the time of move, applyMoves, isGameOver and getGameState, the rejected
+ * moves and the length of the game states are added to a MarbleMetrics object and emitted as flight
+ * recorder events. Games that are not wrapped pay nothing for the measurements.
+ */
+public class InstrumentedMarbleModel implements MarbleModel {
+
+  private final MarbleModel model;
+  private final MarbleMetrics metrics;
+
+  /**
+   * This is the constructor of the InstrumentedMarbleModel class.
+   *
+   * @param model the model to measure.
+   * @param metrics the metrics to update.
+   * @throws IllegalArgumentException if the model or the metrics are null.
+   */
+  public InstrumentedMarbleModel(MarbleModel model, MarbleMetrics metrics)
+      throws IllegalArgumentException {
+
+    if (model == null) {
+      throw new IllegalArgumentException("The model is invalid.");
+    }
+
+    if (metrics == null) {
+      throw new IllegalArgumentException("The metrics are invalid.");
+    }
+
+    this.model = model;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Move a single marble from a given position to another given position, and measure the move.
+   *
+   * @param fromRow the row number of the position to be moved from (starts at 0)
+   * @param fromCol the column number of the position to be moved from (starts at 0)
+   * @param toRow   the row number of the position to be moved to (starts at 0)
+   * @param toCol   the column number of the position to be moved to (starts at 0)
+   * @throws IllegalArgumentException if the move is not possible
+   */
+  @Override
+  public void move(int fromRow, int fromCol, int toRow, int toCol) throws IllegalArgumentException {
+
+    MarbleEvents.Move event = new MarbleEvents.Move();
+    event.begin();
+    long start = System.nanoTime();
+
+    try {
+      model.move(fromRow, fromCol, toRow, toCol);
+    }
+
+    catch (IllegalArgumentException e) {
+      metrics.rejectMove(e.getMessage());
+      event.reason = e.getMessage();
+      throw e;
+    }
+
+    finally {
+      metrics.getMoveNanos().record(System.nanoTime() - start);
+      event.fromRow = fromRow;
+      event.fromCol = fromCol;
+      event.toRow = toRow;
+      event.toCol = toCol;
+      event.commit();
+    }
+  }
+
+  /**
+   * Apply a sequence of moves at once, and measure the batch.
+   *
+   * @param moves the packed moves to apply.
+   * @return -1 if every move was made, or the number of the first move that is not possible.
+   * @throws IllegalArgumentException if the array is null or its length is not a multiple of 4.
+   */
+  @Override
+  public int applyMoves(int[] moves) throws IllegalArgumentException {
+
+    MarbleEvents.ApplyMoves event = new MarbleEvents.ApplyMoves();
+    event.begin();
+    long start = System.nanoTime();
+    int failed = model.applyMoves(moves);
+    metrics.getApplyMovesNanos().record(System.nanoTime() - start);
+    event.moves = moves.length / 4;
+    event.failed = failed;
+    event.commit();
+    return failed;
+
+  }
+
+  /**
+   * Determine and return if the game is over or not, and measure the check.
+   *
+   * @return true if the game is over, false otherwise
+   */
+  @Override
+  public boolean isGameOver() {
+
+    MarbleEvents.GameOverCheck event = new MarbleEvents.GameOverCheck();
+    event.begin();
+    long start = System.nanoTime();
+    boolean gameOver = model.isGameOver();
+    metrics.getGameOverNanos().record(System.nanoTime() - start);
+    event.gameOver = gameOver;
+    event.commit();
+    return gameOver;
+
+  }
+
+  /**
+   * Return a string that represents the current state of the board, and measure its time and
+   * length.
+   *
+   * @return the game state as a string
+   */
+  @Override
+  public String getGameState() {
+
+    MarbleEvents.GameState event = new MarbleEvents.GameState();
+    event.begin();
+    long start = System.nanoTime();
+    String gameState = model.getGameState();
+    metrics.getGameStateNanos().record(System.nanoTime() - start);
+    metrics.getGameStateLength().record(gameState.length());
+    event.length = gameState.length();
+    event.commit();
+    return gameState;
+
+  }
+
+  /**
+   * Return the number of marbles currently on the board.
+   *
+   * @return the number of marbles currently on the board
+   */
+  @Override
+  public int getScore() {
+    return model.getScore();
+  }
+
+  /**
+   * Return the armSize of the game.
+   *
+   * @return the armSize of the game
+   */
+  @Override
+  public int getArmSize() {
+    return model.getArmSize();
+  }
+
+  /**
+   * Return the CellStatus (enum type) of the specific cell.
+   *
+   * @param row the row of the cell.
+   * @param col the column of the cell.
+   * @return the CellStatus of the specific cell
+   */
+  @Override
+  public CellStatus getCellStatus(int row, int col) throws IllegalArgumentException {
+    return model.getCellStatus(row, col);
+  }
+
+}
@@ -5,6 +5,9 @@ package marbleMVC;
  *
  * Note: This program works for all four constructors of the MarbleModel, so you can define our own
  * board by inputting the arm thickness and initial empty slot.
+ *
+ * Run with -Dmarble.instrument=true to measure the model and the controller. The metrics are
+ * printed when the program exits, and the events can be recorded with -XX:StartFlightRecording.
  */
 public class Main {
   /**
@@ -14,8 +17,20 @@ public class Main {
    */
   public static void main(String[] args) {
     MarbleModel model = new MarbleModelImpl();
-    MarbleView view = new MarbleViewImpl();
-    MarbleController c = new MarbleControllerImpl(model, view);
+
+    if (!Boolean.getBoolean("marble.instrument")) {
+      MarbleView view = new MarbleViewImpl();
+      MarbleController c = new MarbleControllerImpl(model, view);
+      c.playGame();
+      return;
+    }
+
+    MarbleMetrics metrics = new MarbleMetrics();
+    MarbleView view = new MarbleViewImpl(MarbleViewImpl.DEFAULT_FRAMES_PER_SECOND, metrics);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(metrics)));
+    model = new InstrumentedMarbleModel(model, metrics);
+    MarbleController c = new InstrumentedMarbleController(new MarbleControllerImpl(model, view),
+        view, metrics);
     c.playGame();
   }
 }
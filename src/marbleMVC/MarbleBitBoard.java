@@ -0,0 +1,168 @@
+package marbleMVC;
+
+/**
+ * This class represents a game board as rows of bits, for boards too large to scan cell by cell.
+ * Every row of the grid is a run of 64-bit words with one bit per column, kept once for the marbles
+ * and once for the empty cells. The legal jumps of a whole row in one direction are then found 64
+ * columns at a time as occupied & shift(occupied) & shift(shift(empty)), so finding a move or
+ * counting the moves of a board with a thousand columns takes microseconds.
+ */
+final class MarbleBitBoard {
+
+  private final int boardSize;
+  private final int wordsPerRow;
+  private final int[][] directions;
+  private final long[] occupied;
+  private final long[] empty;
+
+  /**
+   * This is the constructor of the MarbleBitBoard class.
+   *
+   * @param topology the topology of the board.
+   * @param cells the status of every cell of the topology.
+   */
+  MarbleBitBoard(BoardTopology topology, CellStatus[] cells) {
+
+    this.boardSize = topology.getBoardSize();
+    this.wordsPerRow = (boardSize + 63) >>> 6;
+    this.directions = topology.getShape().getDirections();
+    this.occupied = new long[boardSize * wordsPerRow];
+    this.empty = new long[boardSize * wordsPerRow];
+
+    for (int cell = 0; cell < cells.length; cell++) {
+      set(topology.rowOf(cell), topology.colOf(cell), cells[cell] == CellStatus.OCCUPIED);
+    }
+  }
+
+  /**
+   * This is the copy constructor of the MarbleBitBoard class. It copies the rows of bits at once.
+   *
+   * @param other the bit board to copy.
+   */
+  MarbleBitBoard(MarbleBitBoard other) {
+
+    this.boardSize = other.boardSize;
+    this.wordsPerRow = other.wordsPerRow;
+    this.directions = other.directions;
+    this.occupied = other.occupied.clone();
+    this.empty = other.empty.clone();
+  }
+
+  /**
+   * Set the cell at the given position to hold a marble or to be empty.
+   *
+   * @param row the row of the cell.
+   * @param col the column of the cell.
+   * @param marble true if the cell holds a marble, false if it is empty.
+   */
+  void set(int row, int col, boolean marble) {
+
+    int word = row * wordsPerRow + (col >>> 6);
+    long bit = 1L << col;
+
+    if (marble) {
+      occupied[word] |= bit;
+      empty[word] &= ~bit;
+    }
+
+    else {
+      occupied[word] &= ~bit;
+      empty[word] |= bit;
+    }
+  }
+
+  /**
+   * Determine if there is at least one legal move on the board.
+   *
+   * @return true if a marble can jump, false otherwise.
+   */
+  boolean hasMove() {
+
+    for (int[] direction : directions) {
+      if (scan(direction[0], direction[1], true) > 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Return the number of legal moves on the board.
+   *
+   * @return the number of legal moves on the board.
+   */
+  long countMoves() {
+
+    long moves = 0;
+
+    for (int[] direction : directions) {
+      moves += scan(direction[0], direction[1], false);
+    }
+
+    return moves;
+  }
+
+  /**
+   * Count the marbles that can jump in the given direction, one row of words at a time.
+   *
+   * @param dRow the row step of the direction.
+   * @param dCol the column step of the direction.
+   * @param stopAtFirst if the scan stops at the first word with a legal jump.
+   * @return the number of marbles that can jump in the direction.
+   */
+  private long scan(int dRow, int dCol, boolean stopAtFirst) {
+
+    int firstRow = Math.max(0, -2 * dRow);
+    int lastRow = Math.min(boardSize, boardSize - 2 * dRow);
+    long moves = 0;
+
+    for (int row = firstRow; row < lastRow; row++) {
+
+      int from = row * wordsPerRow;
+      int over = (row + dRow) * wordsPerRow;
+      int to = (row + 2 * dRow) * wordsPerRow;
+
+      for (int w = 0; w < wordsPerRow; w++) {
+        long jumps = occupied[from + w] & shifted(occupied, over, w, dCol)
+            & shifted(empty, to, w, 2 * dCol);
+        if (jumps != 0) {
+          moves += Long.bitCount(jumps);
+          if (stopAtFirst) {
+            return moves;
+          }
+        }
+      }
+    }
+
+    return moves;
+  }
+
+  /**
+   * Return word w of a row shifted by the given number of columns, so that bit j of the result is
+   * bit j + shift of the row. Columns outside the row read as 0.
+   *
+   * @param bits the rows of bits.
+   * @param rowStart the index of the first word of the row.
+   * @param w the index of the word within the row.
+   * @param shift the number of columns to shift, between -2 and 2.
+   * @return the shifted word.
+   */
+  private long shifted(long[] bits, int rowStart, int w, int shift) {
+
+    long word = bits[rowStart + w];
+
+    if (shift > 0) {
+      long next = w + 1 < wordsPerRow ? bits[rowStart + w + 1] : 0;
+      return (word >>> shift) | (next << (64 - shift));
+    }
+
+    if (shift < 0) {
+      long previous = w > 0 ? bits[rowStart + w - 1] : 0;
+      return (word << -shift) | (previous >>> (64 + shift));
+    }
+
+    return word;
+  }
+
+}
@@ -50,4 +50,22 @@ public interface MarbleController {
    */
   void updateBoard();
 
+  /**
+   * Apply a sequence of moves at once, as MarbleModel.applyMoves does, and record them. If every
+   * move is made, the view is updated once for the whole sequence: the changed cells are marked and
+   * the score board is updated at the end.
+   *
+   * @param moves the packed moves to apply, four numbers per move.
+   * @return -1 if every move was made, or the number of the first move that is not possible.
+   * @throws IllegalArgumentException if the array is null or its length is not a multiple of 4.
+   */
+  int applyMoves(int[] moves) throws IllegalArgumentException;
+
+  /**
+   * Return the recording of all the moves made in this game so far.
+   *
+   * @return the recording of this game.
+   */
+  MarbleReplay getReplay();
+
 }
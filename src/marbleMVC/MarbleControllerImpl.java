@@ -1,8 +1,5 @@
 package marbleMVC;
 
-import static java.lang.Math.*;
-
-
 /**
  * This is a Controller for Marble Solitaire: handle user moves by executing them using the model;
  * convey move outcomes to the user in some form.
@@ -11,10 +8,12 @@ public class MarbleControllerImpl implements MarbleController {
 
   private MarbleModel model;
   private MarbleView view;
+  private MarbleReplay replay;
   private int fromRow;
   private int fromCol;
   private int toRow;
   private int toCol;
+  private int initialScore;
 
   /**
    * This is the constructor of the MarbleControllerImpl class.
@@ -35,10 +34,12 @@ public class MarbleControllerImpl implements MarbleController {
 
     this.model = model;
     this.view = view;
+    this.replay = new MarbleReplay(model);
     this.fromRow = -1;
     this.fromCol = -1;
     this.toRow = -1;
     this.toCol = -1;
+    this.initialScore = -1;
   }
 
   /**
@@ -120,6 +121,7 @@ public class MarbleControllerImpl implements MarbleController {
 
     try {
       model.move(fromRow, fromCol, toRow, toCol);
+      replay.record(fromRow, fromCol, toRow, toCol);
       updateBoard();
       view.clearButtonColor(convertToButton(fromRow, fromCol));
       this.fromRow = -1;
@@ -164,16 +166,26 @@ public class MarbleControllerImpl implements MarbleController {
   }
 
   /**
-   * Return the initial score of this game.
+   * Return the initial score of this game, which is one less than the number of cells that can hold
+   * a marble on the board.
    * @return the initial score of this game.
    */
   private int getInitialScore(){
 
-    int armSize = model.getArmSize();
-    int boardSize = model.getArmSize() * 2 + 1;
-    int forbidSize = (boardSize - armSize) / 2;
+    if (initialScore < 0) {
+      int boardSize = model.getArmSize() * 2 + 1;
+      int cells = 0;
+      for (int row = 0; row < boardSize; row++) {
+        for (int col = 0; col < boardSize; col++) {
+          if (model.getCellStatus(row, col) != CellStatus.FORBIDDEN) {
+            cells++;
+          }
+        }
+      }
+      initialScore = cells - 1;
+    }
 
-    return boardSize * boardSize - 4 * forbidSize * forbidSize - 1;
+    return initialScore;
 
   }
 
@@ -204,23 +216,72 @@ public class MarbleControllerImpl implements MarbleController {
   @Override
   public void updateBoard() {
 
-    if (fromRow == toRow) {
-      int minCol = min(fromCol, toCol);
-      int maxCol = max(fromCol, toCol);
-      for (int col = minCol; col <= maxCol; col++) {
-        view.updateCell(convertToButton(fromRow, col));
-      }
+    updateJump(fromRow, fromCol, toRow, toCol);
+    view.updateInfo();
+  }
+
+  /**
+   * Apply a sequence of moves at once, as MarbleModel.applyMoves does, and record them. If every
+   * move is made, the view is updated once for the whole sequence: the changed cells are marked and
+   * the score board is updated at the end. A marble selected by the player is unselected, because
+   * the board under it may have changed.
+   *
+   * @param moves the packed moves to apply, four numbers per move.
+   * @return -1 if every move was made, or the number of the first move that is not possible.
+   * @throws IllegalArgumentException if the array is null or its length is not a multiple of 4.
+   */
+  @Override
+  public int applyMoves(int[] moves) throws IllegalArgumentException {
+
+    int failed = model.applyMoves(moves);
+
+    if (failed >= 0) {
+      return failed;
     }
 
-    else if (fromCol == toCol) {
-      int minRow = min(fromRow, toRow);
-      int maxRow = max(fromRow, toRow);
-      for (int row = minRow; row <= maxRow; row++) {
-        view.updateCell(convertToButton(row, fromCol));
-      }
+    if (this.fromRow != -1) {
+      view.clearButtonColor(convertToButton(fromRow, fromCol));
+      this.fromRow = -1;
+      this.fromCol = -1;
+      this.toRow = -1;
+      this.toCol = -1;
+    }
+
+    for (int i = 0; i < moves.length; i += 4) {
+      replay.record(moves[i], moves[i + 1], moves[i + 2], moves[i + 3]);
+      updateJump(moves[i], moves[i + 1], moves[i + 2], moves[i + 3]);
     }
 
     view.updateInfo();
+    return -1;
+  }
+
+  /**
+   * Update the three cells of a jump in the view: the cell moved from, the cell jumped over and the
+   * cell moved to.
+   *
+   * @param fromRow the row of the cell moved from.
+   * @param fromCol the column of the cell moved from.
+   * @param toRow the row of the cell moved to.
+   * @param toCol the column of the cell moved to.
+   */
+  private void updateJump(int fromRow, int fromCol, int toRow, int toCol) {
+
+    view.updateCell(convertToButton(fromRow, fromCol));
+    view.updateCell(convertToButton((fromRow + toRow) / 2, (fromCol + toCol) / 2));
+    view.updateCell(convertToButton(toRow, toCol));
+  }
+
+  /**
+   * Return the recording of all the moves made in this game so far.
+   *
+   * @return the recording of this game.
+   */
+  @Override
+  public MarbleReplay getReplay() {
+
+    return replay;
+
   }
 
 }
@@ -0,0 +1,121 @@
+package marbleMVC;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class holds the Java Flight Recorder events emitted by InstrumentedMarbleModel,
+ * InstrumentedMarbleController and the MarbleRenderScheduler of the view. The events are only recorded while a flight recording with them
+ * enabled is running.
+ */
+final class MarbleEvents {
+
+  /**
+   * This class is not meant to be created.
+   */
+  private MarbleEvents() {
+  }
+
+  /**
+   * This event represents a single call of move on the model.
+   */
+  @Name("marbleMVC.Move")
+  @Label("Move")
+  @Category("Marble Solitaire")
+  @Description("A move of a marble, successful or rejected")
+  static final class Move extends Event {
+
+    @Label("From Row")
+    int fromRow;
+
+    @Label("From Column")
+    int fromCol;
+
+    @Label("To Row")
+    int toRow;
+
+    @Label("To Column")
+    int toCol;
+
+    @Label("Rejection Reason")
+    String reason;
+  }
+
+  /**
+   * This event represents a single call of applyMoves on the model.
+   */
+  @Name("marbleMVC.ApplyMoves")
+  @Label("Apply Moves")
+  @Category("Marble Solitaire")
+  @Description("A batch of moves, applied or rejected as a whole")
+  static final class ApplyMoves extends Event {
+
+    @Label("Moves")
+    int moves;
+
+    @Label("Failed Move")
+    @Description("The number of the first move that is not possible, or -1")
+    int failed;
+  }
+
+  /**
+   * This event represents a single call of isGameOver on the model.
+   */
+  @Name("marbleMVC.GameOverCheck")
+  @Label("Game Over Check")
+  @Category("Marble Solitaire")
+  static final class GameOverCheck extends Event {
+
+    @Label("Game Over")
+    boolean gameOver;
+  }
+
+  /**
+   * This event represents a single click handled by the controller, including the marking of the
+   * changed cells of the view but not their drawing, which is a RenderFlush event of its own.
+   */
+  @Name("marbleMVC.RecordPosition")
+  @Label("Record Position")
+  @Category("Marble Solitaire")
+  static final class RecordPosition extends Event {
+
+    @Label("Row")
+    int row;
+
+    @Label("Column")
+    int col;
+  }
+
+  /**
+   * This event represents a single frame drawn by a view: the cells and the score board marked
+   * since the last frame.
+   */
+  @Name("marbleMVC.RenderFlush")
+  @Label("Render Flush")
+  @Category("Marble Solitaire")
+  @Description("The drawing of the updates of one frame on the event dispatch thread")
+  static final class RenderFlush extends Event {
+
+    @Label("Cells")
+    int cells;
+
+    @Label("Score Board")
+    boolean info;
+  }
+
+  /**
+   * This event represents a single call of getGameState on the model.
+   */
+  @Name("marbleMVC.GameState")
+  @Label("Game State")
+  @Category("Marble Solitaire")
+  static final class GameState extends Event {
+
+    @Label("Length")
+    int length;
+  }
+
+}
@@ -0,0 +1,200 @@
+package marbleMVC;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run a load test against a MarbleServer on the loopback address. The client opens many connections,
+ * plays one game on each of them until it is over and keeps all of them open while the other games
+ * are still being played. Every reply is checked against a local copy of the game.
+ *
+ * Usage: MarbleLoadClient [connections] [port]. Without a port, a server is started in the same JVM.
+ */
+public class MarbleLoadClient {
+
+  private static final int[][] DIRECTIONS = {{-2, 0}, {2, 0}, {0, -2}, {0, 2}};
+
+  private final InetAddress address;
+  private final int port;
+  private final AtomicLong moves = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  /**
+   * This is the constructor of the MarbleLoadClient class.
+   *
+   * @param address the address of the server.
+   * @param port the port of the server.
+   */
+  public MarbleLoadClient(InetAddress address, int port) {
+
+    this.address = address;
+    this.port = port;
+  }
+
+  /**
+   * Open the given number of connections and play one game on each of them. All the connections
+   * stay open until every game is over.
+   *
+   * @param count the number of connections.
+   * @throws InterruptedException if the client is interrupted while waiting for the games.
+   */
+  public void run(int count) throws InterruptedException {
+
+    CountDownLatch finished = new CountDownLatch(count);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService clients = MarbleServer.newConnectionExecutor();
+
+    for (int i = 0; i < count; i++) {
+      clients.execute(() -> {
+        try (Socket socket = new Socket(address, port)) {
+          play(socket, finished);
+          release.await();
+        }
+        catch (IOException | InterruptedException | IllegalStateException e) {
+          errors.incrementAndGet();
+          finished.countDown();
+        }
+      });
+    }
+
+    finished.await();
+    release.countDown();
+    clients.shutdown();
+  }
+
+  /**
+   * Play a single game on the given connection, always making the first legal move found.
+   *
+   * @param socket the socket of the connection.
+   * @param finished the latch to count down when the game is over.
+   * @throws IOException if the connection fails.
+   * @throws IllegalStateException if a reply of the server does not match the local game.
+   */
+  private void play(Socket socket, CountDownLatch finished) throws IOException {
+
+    InputStream in = new BufferedInputStream(socket.getInputStream(), 256);
+    OutputStream out = socket.getOutputStream();
+    StringBuilder line = new StringBuilder();
+    MarbleModel model = new MarbleModelImpl();
+
+    request(in, out, line, "NEW");
+
+    for (int[] move = findMove(model); move != null; move = findMove(model)) {
+      model.move(move[0], move[1], move[2], move[3]);
+      String reply = request(in, out, line, "MOVE " + move[0] + " " + move[1] + " " + move[2]
+          + " " + move[3]);
+      if (!reply.equals("OK " + model.getScore())) {
+        throw new IllegalStateException("Unexpected reply " + reply);
+      }
+      moves.incrementAndGet();
+    }
+
+    if (!request(in, out, line, "OVER").equals("OK true")) {
+      throw new IllegalStateException("The game should be over.");
+    }
+
+    request(in, out, line, "END");
+    finished.countDown();
+  }
+
+  /**
+   * Send a single command and return the reply of the server.
+   *
+   * @return the reply of the server.
+   * @throws IOException if the connection fails.
+   * @throws IllegalStateException if the server replies with an error.
+   */
+  private String request(InputStream in, OutputStream out, StringBuilder line, String command)
+      throws IOException {
+
+    out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+
+    if (!MarbleServer.readLine(in, line) || line.toString().startsWith("ERROR")) {
+      throw new IllegalStateException("Command " + command + " failed: " + line);
+    }
+
+    return line.toString();
+  }
+
+  /**
+   * Return the first legal move of the game, or null if the game is over.
+   *
+   * @param model the game.
+   * @return the from and to positions of the move, or null if there is none.
+   */
+  private int[] findMove(MarbleModel model) {
+
+    int boardSize = model.getArmSize() * 2 + 1;
+
+    for (int row = 0; row < boardSize; row++) {
+      for (int col = 0; col < boardSize; col++) {
+
+        if (model.getCellStatus(row, col) != CellStatus.OCCUPIED) {
+          continue;
+        }
+
+        for (int[] direction : DIRECTIONS) {
+          int toRow = row + direction[0];
+          int toCol = col + direction[1];
+          if (toRow >= 0 && toRow < boardSize && toCol >= 0 && toCol < boardSize
+              && model.getCellStatus(toRow, toCol) == CellStatus.EMPTY
+              && model.getCellStatus(row + direction[0] / 2, col + direction[1] / 2)
+              == CellStatus.OCCUPIED) {
+            return new int[] {row, col, toRow, toCol};
+          }
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Run the load test and print its results.
+   *
+   * @param args the number of connections and the port of the server (both optional).
+   * @throws Exception if the load test cannot be run.
+   */
+  public static void main(String[] args) throws Exception {
+
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    InetAddress address = InetAddress.getLoopbackAddress();
+    List<AutoCloseable> resources = new ArrayList<>();
+    int port;
+
+    if (args.length > 1) {
+      port = Integer.parseInt(args[1]);
+    }
+
+    else {
+      MarbleServer server = new MarbleServer(address, 0, new MarbleSessionRegistry());
+      server.start();
+      resources.add(server);
+      port = server.getPort();
+    }
+
+    MarbleLoadClient client = new MarbleLoadClient(address, port);
+    long start = System.nanoTime();
+    client.run(count);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    System.out.println(count + " connections, " + client.moves.get() + " moves, "
+        + client.errors.get() + " errors in " + millis + " ms");
+
+    for (AutoCloseable resource : resources) {
+      resource.close();
+    }
+  }
+
+}
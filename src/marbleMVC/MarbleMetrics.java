@@ -0,0 +1,222 @@
+package marbleMVC;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents the counters and histograms collected by InstrumentedMarbleModel,
+ * InstrumentedMarbleController and the MarbleRenderScheduler of the view. All of them can be updated from many threads at the same time
+ * without locking.
+ */
+public class MarbleMetrics {
+
+  private final Histogram moveNanos = new Histogram();
+  private final Histogram applyMovesNanos = new Histogram();
+  private final Histogram gameOverNanos = new Histogram();
+  private final Histogram recordPositionNanos = new Histogram();
+  private final Histogram renderFlushNanos = new Histogram();
+  private final Histogram gameStateNanos = new Histogram();
+  private final Histogram gameStateLength = new Histogram();
+  private final Map<String, LongAdder> rejectedMoves = new ConcurrentHashMap<>();
+
+  /**
+   * This class represents a histogram with one bucket per power of two. Bucket i counts the values
+   * from 2^(i-1) up to 2^i - 1, and bucket 0 counts the value 0.
+   */
+  public static class Histogram {
+
+    private final LongAdder[] buckets = new LongAdder[65];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * This is the constructor of the Histogram class.
+     */
+    Histogram() {
+
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * Add a single non-negative value to the histogram.
+     *
+     * @param value the value.
+     */
+    public void record(long value) {
+
+      buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+      count.increment();
+      sum.add(value);
+    }
+
+    /**
+     * Return the number of values in the histogram.
+     *
+     * @return the number of values in the histogram.
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * Return the mean of the values in the histogram, or 0 if it is empty.
+     *
+     * @return the mean of the values in the histogram.
+     */
+    public double getMean() {
+
+      long n = count.sum();
+      return n == 0 ? 0 : (double) sum.sum() / n;
+
+    }
+
+    /**
+     * Return an upper bound of the given percentile of the values in the histogram.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket that holds the percentile.
+     */
+    public long getPercentile(double percentile) {
+
+      long target = (long) Math.ceil(count.sum() * percentile / 100);
+      long seen = 0;
+
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i].sum();
+        if (seen >= target && seen > 0) {
+          return i == 0 ? 0 : i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+        }
+      }
+
+      return 0;
+    }
+
+    /**
+     * Return a one line summary of the histogram.
+     *
+     * @return a one line summary of the histogram.
+     */
+    @Override
+    public String toString() {
+      return String.format("count=%d mean=%.1f p50<=%d p99<=%d", getCount(), getMean(),
+          getPercentile(50), getPercentile(99));
+    }
+  }
+
+  /**
+   * Return the histogram of the time of move in nanoseconds.
+   *
+   * @return the histogram of the time of move.
+   */
+  public Histogram getMoveNanos() {
+    return moveNanos;
+  }
+
+  /**
+   * Return the histogram of the time of applyMoves in nanoseconds, one value per batch of moves.
+   *
+   * @return the histogram of the time of applyMoves.
+   */
+  public Histogram getApplyMovesNanos() {
+    return applyMovesNanos;
+  }
+
+  /**
+   * Return the histogram of the time of isGameOver in nanoseconds.
+   *
+   * @return the histogram of the time of isGameOver.
+   */
+  public Histogram getGameOverNanos() {
+    return gameOverNanos;
+  }
+
+  /**
+   * Return the histogram of the time of recordPosition in nanoseconds, including the marking of the
+   * changed cells of the view but not their drawing, which is measured by getRenderFlushNanos.
+   *
+   * @return the histogram of the time of recordPosition.
+   */
+  public Histogram getRecordPositionNanos() {
+    return recordPositionNanos;
+  }
+
+  /**
+   * Return the histogram of the time of drawing one frame of the view on the event dispatch thread
+   * in nanoseconds. Together with getRecordPositionNanos it covers the time of a click on the event
+   * dispatch thread.
+   *
+   * @return the histogram of the time of drawing a frame.
+   */
+  public Histogram getRenderFlushNanos() {
+    return renderFlushNanos;
+  }
+
+  /**
+   * Return the histogram of the time of getGameState in nanoseconds.
+   *
+   * @return the histogram of the time of getGameState.
+   */
+  public Histogram getGameStateNanos() {
+    return gameStateNanos;
+  }
+
+  /**
+   * Return the histogram of the length of the strings returned by getGameState.
+   *
+   * @return the histogram of the length of the game states.
+   */
+  public Histogram getGameStateLength() {
+    return gameStateLength;
+  }
+
+  /**
+   * Count a move rejected by the model.
+   *
+   * @param reason the message of the exception thrown by the model.
+   */
+  public void rejectMove(String reason) {
+
+    rejectedMoves.computeIfAbsent(String.valueOf(reason), r -> new LongAdder()).increment();
+
+  }
+
+  /**
+   * Return the number of rejected moves for each reason.
+   *
+   * @return the number of rejected moves for each reason, sorted by reason.
+   */
+  public Map<String, Long> getRejectedMoves() {
+
+    Map<String, Long> counts = new TreeMap<>();
+    rejectedMoves.forEach((reason, count) -> counts.put(reason, count.sum()));
+    return counts;
+
+  }
+
+  /**
+   * Return a summary of all the metrics, one per line.
+   *
+   * @return a summary of all the metrics.
+   */
+  @Override
+  public String toString() {
+
+    StringBuilder report = new StringBuilder();
+    report.append("move ns: ").append(moveNanos).append('\n');
+    report.append("applyMoves ns: ").append(applyMovesNanos).append('\n');
+    report.append("isGameOver ns: ").append(gameOverNanos).append('\n');
+    report.append("recordPosition ns: ").append(recordPositionNanos).append('\n');
+    report.append("render flush ns: ").append(renderFlushNanos).append('\n');
+    report.append("getGameState ns: ").append(gameStateNanos).append('\n');
+    report.append("getGameState length: ").append(gameStateLength);
+    getRejectedMoves().forEach((reason, count) ->
+        report.append('\n').append("rejected: ").append(reason).append(" x").append(count));
+    return report.toString();
+
+  }
+
+}
@@ -22,6 +22,19 @@ public interface MarbleModel {
   void move(int fromRow,int fromCol,int toRow,int toCol) throws
           IllegalArgumentException;
 
+  /**
+   * Apply a sequence of moves at once. Move i is given by the four numbers
+   * fromRow, fromCol, toRow and toCol at 4 * i to 4 * i + 3 of the array.
+   * Either every move is made, or the first move that is not possible is
+   * reported and the board is left as it was before the call.
+   * @param moves the packed moves to apply
+   * @return -1 if every move was made, or the number of the first move
+   *         that is not possible
+   * @throws IllegalArgumentException if the array is null or its length is
+   *         not a multiple of 4
+   */
+  int applyMoves(int[] moves) throws IllegalArgumentException;
+
   /**
    * Determine and return if the game is over or not. A game is over if no
    * more moves can be made.
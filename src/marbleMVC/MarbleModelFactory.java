@@ -0,0 +1,160 @@
+package marbleMVC;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class creates new games for workloads that start many games on the same boards. The first
+ * game of every shape, arm thickness and empty slot is built by the constructor of MarbleModelImpl
+ * and kept as a template that is never played. Every new game with the same configuration is a
+ * copy of its template, which copies the board, and the rows of bits of a large board, as whole
+ * arrays.
+ *
+ * The templates are kept in a ConcurrentHashMap, so games are created from many threads without
+ * waiting for each other. At most about MAX_TEMPLATES configurations keep a template, so the
+ * memory held by the factory is bounded however many boards are played: when a new template goes
+ * over the bound, other templates are dropped in no particular order. A configuration whose
+ * template was dropped gets a new one the next time it is used.
+ *
+ * The games are the same as the ones made by the constructors of MarbleModelImpl with the same
+ * arguments, and the same arguments are rejected with the same messages.
+ */
+public final class MarbleModelFactory {
+
+  static final int MAX_TEMPLATES = 64;
+  private static final int STANDARD_ARM_SIZE = 3;
+  private static final Map<Key, MarbleModelImpl> TEMPLATES = new ConcurrentHashMap<>();
+
+  /**
+   * This class represents a configuration of a game: the board and the initial empty slot.
+   */
+  private static final class Key {
+
+    private final BoardTopology topology;
+    private final int empty;
+
+    /**
+     * This is the constructor of the Key class.
+     *
+     * @param topology the topology of the board.
+     * @param empty the index of the initial empty slot.
+     */
+    Key(BoardTopology topology, int empty) {
+
+      this.topology = topology;
+      this.empty = empty;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+
+      if (!(other instanceof Key)) {
+        return false;
+      }
+
+      Key key = (Key) other;
+      return topology.equals(key.topology) && empty == key.empty;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * topology.hashCode() + empty;
+    }
+  }
+
+  /**
+   * This is the constructor of the MarbleModelFactory class. It is private because the class only
+   * has static methods.
+   */
+  private MarbleModelFactory() {
+  }
+
+  /**
+   * Return a new game on the English board of arm thickness 3 with the empty slot at the center.
+   *
+   * @return a new game.
+   */
+  public static MarbleModelImpl create() {
+    return create(BoardShape.ENGLISH, STANDARD_ARM_SIZE, STANDARD_ARM_SIZE, STANDARD_ARM_SIZE);
+  }
+
+  /**
+   * Return a new game on the English board of the given arm thickness with the empty slot at the
+   * center.
+   *
+   * @param armSize the arm thickness of the board.
+   * @return a new game.
+   * @throws IllegalArgumentException if the arm thickness is invalid.
+   */
+  public static MarbleModelImpl create(int armSize) throws IllegalArgumentException {
+    return create(BoardShape.ENGLISH, armSize, armSize, armSize);
+  }
+
+  /**
+   * Return a new game on the English board of the given arm thickness with the empty slot at the
+   * given position.
+   *
+   * @param armSize the arm thickness of the board.
+   * @param sRow the row index of the initial empty slot.
+   * @param sCol the column index of the initial empty slot.
+   * @return a new game.
+   * @throws IllegalArgumentException if the arm thickness or the empty slot is invalid.
+   */
+  public static MarbleModelImpl create(int armSize, int sRow, int sCol)
+      throws IllegalArgumentException {
+    return create(BoardShape.ENGLISH, armSize, sRow, sCol);
+  }
+
+  /**
+   * Return a new game on the board of the given shape and arm thickness with the empty slot at the
+   * given position.
+   *
+   * @param shape the shape of the board.
+   * @param armSize the arm thickness of the board.
+   * @param sRow the row index of the initial empty slot.
+   * @param sCol the column index of the initial empty slot.
+   * @return a new game.
+   * @throws IllegalArgumentException if the shape, the arm thickness or the empty slot is invalid.
+   */
+  public static MarbleModelImpl create(BoardShape shape, int armSize, int sRow, int sCol)
+      throws IllegalArgumentException {
+
+    BoardTopology topology = BoardTopology.of(shape, armSize);
+    int empty = topology.indexOf(sRow, sCol);
+
+    if (empty < 0) {
+      // Let the constructor reject the empty slot with its own message.
+      return new MarbleModelImpl(shape, armSize, sRow, sCol);
+    }
+
+    Key key = new Key(topology, empty);
+    MarbleModelImpl template = TEMPLATES.get(key);
+
+    if (template == null) {
+      // A race only builds the template twice.
+      template = new MarbleModelImpl(shape, armSize, sRow, sCol);
+      TEMPLATES.put(key, template);
+      evict(key);
+    }
+
+    return new MarbleModelImpl(template);
+  }
+
+  /**
+   * Drop templates other than the given one until there are at most MAX_TEMPLATES. Threads that
+   * evict at the same time may drop a few more than needed, which only costs rebuilding them.
+   *
+   * @param kept the configuration whose template is kept.
+   */
+  private static void evict(Key kept) {
+
+    Iterator<Key> keys = TEMPLATES.keySet().iterator();
+    while (TEMPLATES.size() > MAX_TEMPLATES && keys.hasNext()) {
+      if (!keys.next().equals(kept)) {
+        keys.remove();
+      }
+    }
+  }
+
+}
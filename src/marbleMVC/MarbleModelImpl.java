@@ -2,16 +2,28 @@ package marbleMVC;
 
 import static java.lang.Math.abs;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * This class represents the implementation of the MarbleSolitaireModel Interface. It can be
- * initialized to 4 different constructors.
+ * initialized to 5 different constructors.
+ *
+ * The geometry of the board is kept in a shared BoardTopology, so checking a move and looking for
+ * legal moves only need lookups in its tables of jumps. Boards of 64 or more columns also keep a
+ * MarbleBitBoard, which finds and counts the legal moves of whole rows at once.
  */
 public class MarbleModelImpl implements MarbleModel {
 
   private static final int STANDARD_ARM_SIZE = 3;
+  private static final int BIT_BOARD_SIZE = 64;
+  private final BoardTopology topology;
   private final int armSize;
   private final int boardSize;
-  private CellStatus[][] board;
+  private CellStatus[] cells;
+  private MarbleBitBoard bits;
   private int score;
 
   /**
@@ -21,10 +33,7 @@ public class MarbleModelImpl implements MarbleModel {
    */
   public MarbleModelImpl() {
 
-    this.armSize = STANDARD_ARM_SIZE;
-    this.boardSize = this.armSize * 2 + 1;
-    this.board = createBoard(this.armSize, armSize, armSize);
-    this.score = setInitialScore();
+    this(BoardShape.ENGLISH, STANDARD_ARM_SIZE, STANDARD_ARM_SIZE, STANDARD_ARM_SIZE);
 
   }
 
@@ -37,10 +46,7 @@ public class MarbleModelImpl implements MarbleModel {
    */
   public MarbleModelImpl(int sRow, int sCol) {
 
-    this.armSize = STANDARD_ARM_SIZE;
-    this.boardSize = this.armSize * 2 + 1;
-    this.board = createBoard(this.armSize, sRow, sCol);
-    this.score = setInitialScore();
+    this(BoardShape.ENGLISH, STANDARD_ARM_SIZE, sRow, sCol);
 
   }
 
@@ -51,10 +57,7 @@ public class MarbleModelImpl implements MarbleModel {
    */
   public MarbleModelImpl(int armSize) throws IllegalArgumentException{
 
-    this.armSize = armSize;
-    this.boardSize = this.armSize * 2 + 1;
-    this.board = createBoard(this.armSize, armSize, armSize);
-    this.score = setInitialScore();
+    this(BoardShape.ENGLISH, armSize, armSize, armSize);
   }
 
   /**
@@ -67,73 +70,187 @@ public class MarbleModelImpl implements MarbleModel {
    */
   public MarbleModelImpl(int armSize, int sRow, int sCol) {
 
+    this(BoardShape.ENGLISH, armSize, sRow, sCol);
+  }
+
+  /**
+   * This is the fifth constructor of the MarbleSolitaireModelImpl. It crates the game board with
+   * the given shape, customized arm thickness and the empty slot at the position (sRow, sCol).
+   *
+   * @param shape the shape of the game board.
+   * @param armSize the customized armSize of the game board.
+   * @param sRow the row index of the initial empty slot.
+   * @param sCol the column index of the initial empty slot.
+   * @throws IllegalArgumentException if the arm thickness or the empty slot is invalid.
+   */
+  public MarbleModelImpl(BoardShape shape, int armSize, int sRow, int sCol)
+      throws IllegalArgumentException {
+
+    this.topology = BoardTopology.of(shape, armSize);
     this.armSize = armSize;
     this.boardSize = this.armSize * 2 + 1;
-    this.board = createBoard(this.armSize, sRow, sCol);
+    this.cells = createBoard(sRow, sCol);
+    this.bits = createBitBoard();
     this.score = setInitialScore();
   }
 
   /**
-   * Return a two-dimensional array that represents the board of the game.
-   * @param armSize the arm thickness of the board.
-   * @param sRow the index of the row of the empty slot.
-   * @param sCol the index of the column of the empty slot.
-   * @return a two-dimensional array that represents the board of the game.
+   * This is the copy constructor of the MarbleSolitaireModelImpl. It creates an independent game
+   * with the same board and score as the given model. Models other than MarbleModelImpl are taken
+   * to be played on the English board. The board of another MarbleModelImpl, and its rows of bits,
+   * are copied at once.
+   *
+   * @param other the model to copy.
    */
-  private CellStatus[][] createBoard(int armSize, int sRow, int sCol) throws IllegalArgumentException {
+  MarbleModelImpl(MarbleModel other) {
 
-    if (armSize < STANDARD_ARM_SIZE || armSize % 2 == 0) {
-      throw new IllegalArgumentException("The arm thickness must be a positive odd integer.");
-    }
+    this.topology = other instanceof MarbleModelImpl ? ((MarbleModelImpl) other).topology
+        : BoardTopology.of(BoardShape.ENGLISH, other.getArmSize());
+    this.armSize = other.getArmSize();
+    this.boardSize = this.armSize * 2 + 1;
+    this.cells = copyBoard(other);
+    this.bits = other instanceof MarbleModelImpl && ((MarbleModelImpl) other).bits != null
+        ? new MarbleBitBoard(((MarbleModelImpl) other).bits) : createBitBoard();
+    this.score = other.getScore();
+  }
+
+  /**
+   * This is the constructor of the MarbleSolitaireModelImpl that restores a game from a
+   * MarbleSnapshot. Bit i of the occupied words tells if cell i of the topology holds a marble.
+   *
+   * Unlike createBoard, it does not check any position, because a snapshot always describes a
+   * valid board.
+   *
+   * @param topology the topology of the board.
+   * @param occupied the packed marbles of the board.
+   * @param score the number of marbles on the board.
+   */
+  MarbleModelImpl(BoardTopology topology, long[] occupied, int score) {
 
-    int boardSize = armSize * 2 + 1;
+    this.topology = topology;
+    this.armSize = topology.getArmSize();
+    this.boardSize = this.armSize * 2 + 1;
+    this.cells = new CellStatus[topology.getCellCount()];
+    this.score = score;
 
-    if (sRow < 0 || sRow >= boardSize || sCol < 0 || sCol >= boardSize || isForbidden(sRow, sCol)) {
-      throw new IllegalArgumentException("Invalid position for the empty cell.");
+    for (int cell = 0; cell < this.cells.length; cell++) {
+      boolean marble = (occupied[cell >>> 6] & (1L << cell)) != 0;
+      this.cells[cell] = marble ? CellStatus.OCCUPIED : CellStatus.EMPTY;
     }
 
-    CellStatus[][] board = new CellStatus[boardSize][boardSize];
+    this.bits = createBitBoard();
+  }
 
-    for (int i = 0; i < boardSize; i++) {
+  /**
+   * Write a checkpoint of this game to the given output. The checkpoint is a versioned MarbleSnapshot
+   * with a fixed layout for each board.
+   *
+   * @param out the output.
+   * @throws IOException if the checkpoint cannot be written.
+   */
+  public void save(DataOutput out) throws IOException {
 
-      for (int j = 0; j < boardSize; j++) {
+    MarbleSnapshot.of(this).writeTo(out);
 
-        if (i == sRow && j == sCol) {
-          board[i][j] = CellStatus.EMPTY;
-        }
+  }
 
-        else if (isForbidden(i, j)) {
-          board[i][j] = CellStatus.FORBIDDEN;
-        }
+  /**
+   * Read a game from a checkpoint written by save.
+   *
+   * @param in the input.
+   * @return the game of the checkpoint.
+   * @throws IOException if the checkpoint cannot be read or is inconsistent.
+   * @throws IllegalArgumentException if the input is not a checkpoint of a supported version.
+   */
+  public static MarbleModelImpl load(DataInput in) throws IOException, IllegalArgumentException {
 
-        else {
-          board[i][j] = CellStatus.OCCUPIED;
-        }
+    return MarbleSnapshot.readFrom(in).toModel();
+
+  }
+
+  /**
+   * Return the topology of the board of this game.
+   *
+   * @return the topology of the board of this game.
+   */
+  BoardTopology getTopology() {
+    return this.topology;
+  }
+
+  /**
+   * Return the marbles of the board packed into words. Bit i of the words tells if cell i of the
+   * topology holds a marble.
+   *
+   * @return the packed marbles of the board.
+   */
+  long[] packOccupied() {
+
+    long[] occupied = new long[(this.cells.length + 63) >>> 6];
+
+    for (int cell = 0; cell < this.cells.length; cell++) {
+      if (this.cells[cell] == CellStatus.OCCUPIED) {
+        occupied[cell >>> 6] |= 1L << cell;
       }
     }
 
-    return board;
+    return occupied;
   }
 
   /**
-   * Determine if the cell on the board is forbidden (i.e. not allowed for a marble).
-   *
-   * @param row the row of the cell to check.
-   * @param col the column of the cell to check
-   * @return a boolean that indicates if the specific cell is forbidden for a marble.
+   * Return a copy of the board of the given model. The board of another MarbleModelImpl is copied
+   * at once, which avoids checking the bounds of every single cell.
+   * @param other the model whose board is copied.
+   * @return an array that represents a copy of the board of the given model.
    */
-  private boolean isForbidden(int row, int col) {
+  private CellStatus[] copyBoard(MarbleModel other) {
 
-    if (row < 0 || row >= this.boardSize || col < 0 || col >= boardSize) {
-      throw new IllegalArgumentException("Invalid cell position of the game board.");
+    if (other instanceof MarbleModelImpl) {
+      return ((MarbleModelImpl) other).cells.clone();
+    }
+
+    CellStatus[] cells = new CellStatus[this.topology.getCellCount()];
+
+    for (int cell = 0; cell < cells.length; cell++) {
+      cells[cell] = other.getCellStatus(this.topology.rowOf(cell), this.topology.colOf(cell));
+    }
+
+    return cells;
+  }
+
+  /**
+   * Return an array that represents the board of the game, with one entry for every cell of the
+   * topology.
+   * @param sRow the index of the row of the empty slot.
+   * @param sCol the index of the column of the empty slot.
+   * @return an array that represents the board of the game.
+   */
+  private CellStatus[] createBoard(int sRow, int sCol) throws IllegalArgumentException {
+
+    int empty = this.topology.indexOf(sRow, sCol);
+
+    if (empty < 0) {
+      throw new IllegalArgumentException("Invalid position for the empty cell.");
     }
 
-    int forbidSize = (this.boardSize - this.armSize) / 2;
+    CellStatus[] cells = new CellStatus[this.topology.getCellCount()];
+    Arrays.fill(cells, CellStatus.OCCUPIED);
+    cells[empty] = CellStatus.EMPTY;
+
+    return cells;
+  }
+
+  /**
+   * Return the rows of bits of the board if it has 64 or more columns, or null otherwise.
+   * @return the rows of bits of the board, or null for smaller boards.
+   */
+  private MarbleBitBoard createBitBoard() {
+
+    if (this.boardSize < BIT_BOARD_SIZE) {
+      return null;
+    }
+
+    return new MarbleBitBoard(this.topology, this.cells);
 
-    return row < forbidSize && col < forbidSize ||
-        row < forbidSize && col >= (forbidSize + this.armSize) ||
-        row >= (forbidSize + this.armSize) && col < forbidSize ||
-        row >= (forbidSize + this.armSize) && col >= (forbidSize + this.armSize);
   }
 
   /**
@@ -142,9 +259,7 @@ public class MarbleModelImpl implements MarbleModel {
    */
   private int setInitialScore() {
 
-    int forbidSize = (this.boardSize - this.armSize) / 2;
-
-    return boardSize * boardSize - 4 * forbidSize * forbidSize - 1;
+    return this.topology.getCellCount() - 1;
 
   }
 
@@ -160,7 +275,8 @@ public class MarbleModelImpl implements MarbleModel {
       throw new IllegalArgumentException("Invalid cell position of the game board.");
     }
 
-    return board[row][col];
+    int cell = this.topology.indexOf(row, col);
+    return cell < 0 ? CellStatus.FORBIDDEN : cells[cell];
 
   }
 
@@ -188,130 +304,159 @@ public class MarbleModelImpl implements MarbleModel {
       throw new IllegalArgumentException("The to position of the move is invalid.");
     }
 
-    int midRow, midCol;
+    int from = this.topology.indexOf(fromRow, fromCol);
+    int to = this.topology.indexOf(toRow, toCol);
+    int over = findOver(from, to);
+
+    if (over >= 0 && this.cells[over] == CellStatus.OCCUPIED) {
+      setCell(from, CellStatus.EMPTY);
+      setCell(over, CellStatus.EMPTY);
+      setCell(to, CellStatus.OCCUPIED);
+      this.score -= 1;
+      return;
+    }
+
     int rowDiff = toRow - fromRow;
     int colDiff = toCol - fromCol;
 
     if (rowDiff == 0) {
-      midRow = fromRow;
-      if (colDiff == 2 && checkEast(fromRow, fromCol)) {
-        midCol = fromCol + 1;
-      }
-      else if (colDiff == -2 && checkWest(fromRow, fromCol)) {
-        midCol = fromCol - 1;
-      }
-      else {
-        throw new IllegalArgumentException("Invalid horizontal move: marble must jump over exactly"
-            + " one marble and land in an empty slot exactly two positions away");
-      }
+      throw new IllegalArgumentException("Invalid horizontal move: marble must jump over exactly"
+          + " one marble and land in an empty slot exactly two positions away");
     }
     else if (colDiff == 0) {
-      midCol = fromCol;
-      if (rowDiff == 2 && checkSouth(fromRow, fromCol)) {
-        midRow = fromRow + 1;
-      }
-      else if (rowDiff == -2 && checkNorth(fromRow, fromCol)){
-        midRow = fromRow - 1;
-      }
-      else {
-        throw new IllegalArgumentException("Invalid vertical move: marble must jump over exactly one "
-            + "marble and land in an empty slot exactly two positions away");
-      }
+      throw new IllegalArgumentException("Invalid vertical move: marble must jump over exactly one "
+          + "marble and land in an empty slot exactly two positions away");
+    }
+    else if (this.topology.getShape() == BoardShape.TRIANGULAR) {
+      throw new IllegalArgumentException("Invalid move: only horizontal, vertical and diagonal "
+          + "moves that jump over exactly one marble are allowed");
     }
     else {
       throw new IllegalArgumentException("Invalid move: only horizontal and vertical moves are allowed");
     }
 
-    this.board[fromRow][fromCol] = CellStatus.EMPTY;
-    this.board[midRow][midCol] = CellStatus.EMPTY;
-    this.board[toRow][toCol] = CellStatus.OCCUPIED;
-    this.score -= 1;
-
   }
 
   /**
-   * Determine if the marble can move to north.
-   * @param row the row index of the marble to be moved.
-   * @param col the column index of the marble to be moved.
-   * @return a boolean indicates if the marble can be moved to the north.
+   * Apply a sequence of moves at once. Move i is given by the four numbers fromRow, fromCol, toRow
+   * and toCol at 4 * i to 4 * i + 3 of the array. Either every move is made, or the first move that
+   * is not possible is reported and the board is left as it was before the call.
+   *
+   * Every move is checked with lookups in the topology instead of exceptions, the cells of the moves
+   * made so far are kept to undo them if a later move fails, and the score is updated once at the
+   * end.
+   *
+   * @param moves the packed moves to apply.
+   * @return -1 if every move was made, or the number of the first move that is not possible.
+   * @throws IllegalArgumentException if the array is null or its length is not a multiple of 4.
    */
-  private boolean checkNorth(int row, int col) {
-    int midRow = row - 1;
-    int toRow = row - 2;
-    return (getCellStatus(midRow, col) == CellStatus.OCCUPIED) &&
-        (getCellStatus(toRow, col) == CellStatus.EMPTY);
-  }
+  @Override
+  public int applyMoves(int[] moves) throws IllegalArgumentException {
 
-  /**
-   * Determine if the marble can move to south.
-   * @param row the row index of the marble to be moved.
-   * @param col the column index of the marble to be moved.
-   * @return a boolean indicates if the marble can be moved to the south.
-   */
-  private boolean checkSouth(int row, int col) {
-    int midRow = row + 1;
-    int toRow = row + 2;
-    return (getCellStatus(midRow, col) == CellStatus.OCCUPIED) &&
-        (getCellStatus(toRow, col) == CellStatus.EMPTY);
+    if (moves == null || moves.length % 4 != 0) {
+      throw new IllegalArgumentException("The moves are invalid.");
+    }
+
+    int count = moves.length / 4;
+    int[] jumped = new int[3 * count];
+
+    for (int i = 0; i < count; i++) {
+      int from = this.topology.indexOf(moves[4 * i], moves[4 * i + 1]);
+      int to = this.topology.indexOf(moves[4 * i + 2], moves[4 * i + 3]);
+      int over = from < 0 || to < 0 ? -1 : findOver(from, to);
+
+      if (over < 0 || this.cells[from] != CellStatus.OCCUPIED
+          || this.cells[over] != CellStatus.OCCUPIED || this.cells[to] != CellStatus.EMPTY) {
+        for (int j = i - 1; j >= 0; j--) {
+          setCell(jumped[3 * j], CellStatus.OCCUPIED);
+          setCell(jumped[3 * j + 1], CellStatus.OCCUPIED);
+          setCell(jumped[3 * j + 2], CellStatus.EMPTY);
+        }
+        return i;
+      }
+
+      setCell(from, CellStatus.EMPTY);
+      setCell(over, CellStatus.EMPTY);
+      setCell(to, CellStatus.OCCUPIED);
+      jumped[3 * i] = from;
+      jumped[3 * i + 1] = over;
+      jumped[3 * i + 2] = to;
+    }
+
+    this.score -= count;
+    return -1;
   }
 
   /**
-   * Determine if the marble can move to west.
-   * @param row the row index of the marble to be moved.
-   * @param col the column index of the marble to be moved.
-   * @return a boolean indicates if the marble can be moved to the west.
+   * Return the cell between two cells that are one jump apart, or -1 if the board has no jump
+   * between them. Small boards look the jump up in the table of the topology; boards with a
+   * MarbleBitBoard work it out from the positions, so the table is never built for them.
+   * @param from the number of the cell to jump from.
+   * @param to the number of the cell to land on.
+   * @return the number of the cell jumped over, or -1 if there is no such jump.
    */
-  private boolean checkWest(int row, int col) {
-    int midCol = col - 1;
-    int toCol = col - 2;
-    return (getCellStatus(row, midCol) == CellStatus.OCCUPIED) &&
-        (getCellStatus(row, toCol) == CellStatus.EMPTY);
-  }
+  private int findOver(int from, int to) {
+
+    if (this.bits == null) {
+      int[] triples = this.topology.getTriples();
+      int[] first = this.topology.getFirstTriples();
+      for (int t = first[from]; t < first[from + 1]; t++) {
+        if (triples[3 * t + 2] == to) {
+          return triples[3 * t + 1];
+        }
+      }
+      return -1;
+    }
 
+    int rowDiff = this.topology.rowOf(to) - this.topology.rowOf(from);
+    int colDiff = this.topology.colOf(to) - this.topology.colOf(from);
 
-  /**
-   * Determine if the marble can move to east.
-   * @param row the row index of the marble to be moved.
-   * @param col the column index of the marble to be moved.
-   * @return a boolean indicates if the marble can be moved to the east.
-   */
-  private boolean checkEast(int row, int col) {
-    int midCol = col + 1;
-    int toCol = col + 2;
-    return (getCellStatus(row, midCol) == CellStatus.OCCUPIED) &&
-        (getCellStatus(row, toCol) == CellStatus.EMPTY);
+    for (int[] direction : this.topology.getShape().getDirections()) {
+      if (rowDiff == 2 * direction[0] && colDiff == 2 * direction[1]) {
+        return this.topology.indexOf(this.topology.rowOf(from) + direction[0],
+            this.topology.colOf(from) + direction[1]);
+      }
+    }
+    return -1;
   }
 
   /**
-   * Determine if the specific position has legal move
-   * @param row the row index of cell
-   * @param col the column index of the cell
-   * @return a boolean that indicates if there is at least a legal move for the position,
+   * Set the status of a cell, keeping the rows of bits of large boards up to date.
+   * @param cell the number of the cell.
+   * @param status the new status of the cell.
    */
-  private boolean hasLegalMove(int row, int col) throws IllegalArgumentException{
-
-    if (getCellStatus(row, col) != CellStatus.OCCUPIED) {
-      throw new IllegalArgumentException("No marble on this cell.");
-    }
+  private void setCell(int cell, CellStatus status) {
 
-    if (row < 2) {
-      return checkSouth(row, col) || checkWest(row, col) || checkEast(row, col);
-    }
+    this.cells[cell] = status;
 
-    if (row > this.boardSize - 3) {
-      return checkNorth(row, col) || checkWest(row, col) || checkEast(row, col);
+    if (this.bits != null) {
+      this.bits.set(this.topology.rowOf(cell), this.topology.colOf(cell),
+          status == CellStatus.OCCUPIED);
     }
+  }
 
-    if (col < 2) {
-      return checkNorth(row, col) || checkSouth(row, col) || checkEast(row, col);
-    }
+  /**
+   * Return the number of legal moves on the board.
+   *
+   * @return the number of legal moves on the board.
+   */
+  long countMoves() {
 
-    if (col > this.boardSize - 3) {
-      return checkNorth(row, col) || checkSouth(row, col) || checkWest(row, col);
+    if (this.bits != null) {
+      return this.bits.countMoves();
     }
 
-    return checkNorth(row, col) || checkSouth(row, col) || checkWest(row, col) || checkEast(row, col);
+    int[] triples = this.topology.getTriples();
+    long moves = 0;
 
+    for (int t = 0; t < triples.length; t += 3) {
+      if (this.cells[triples[t]] == CellStatus.OCCUPIED
+          && this.cells[triples[t + 1]] == CellStatus.OCCUPIED
+          && this.cells[triples[t + 2]] == CellStatus.EMPTY) {
+        moves++;
+      }
+    }
+    return moves;
   }
 
   /**
@@ -321,11 +466,18 @@ public class MarbleModelImpl implements MarbleModel {
    */
   @Override
   public boolean isGameOver() {
-    for (int i = 0; i < this.boardSize; i++) {
-      for (int j = 0; j < this.boardSize; j++) {
-        if (getCellStatus(i, j) == CellStatus.OCCUPIED && hasLegalMove(i, j)) {
-          return false;
-        }
+
+    if (this.bits != null) {
+      return !this.bits.hasMove();
+    }
+
+    int[] triples = this.topology.getTriples();
+
+    for (int t = 0; t < triples.length; t += 3) {
+      if (this.cells[triples[t]] == CellStatus.OCCUPIED
+          && this.cells[triples[t + 1]] == CellStatus.OCCUPIED
+          && this.cells[triples[t + 2]] == CellStatus.EMPTY) {
+        return false;
       }
     }
     return true;
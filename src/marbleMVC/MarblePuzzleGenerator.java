@@ -0,0 +1,304 @@
+package marbleMVC;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class generates starting positions of a given number of marbles that have a solution, sorted
+ * by difficulty, on a pool of worker threads, until it has enough positions of a target difficulty.
+ *
+ * A position is made by playing the game backwards from a single marble on a random cell: a
+ * backward jump takes a marble from the cell it landed on and puts it and the marble it jumped over
+ * back. Every position made this way has a solution, but each one is still solved by a
+ * MarbleSolver, which gives the solution and the number of positions searched to find it. The
+ * difficulty of a position is the number of digits of that number, so difficulty d holds the
+ * positions that took from 10^(d-1) to 10^d - 1 positions to solve.
+ *
+ * Every verified position, of the target difficulty or easier, is written to the output as soon as
+ * it is found, as one line with its difficulty, its number of positions searched and its cells in
+ * order, O for a marble and _ for an empty cell, so the lines can be bucketed by their first word.
+ * Positions harder than the target are not verified, because the solver gives up on them. Every
+ * position is only made once: a position that is the same as one made before, or symmetric to it,
+ * is skipped before it is solved.
+ *
+ * Some targets are rare or cannot be reached at all, such as a difficulty that no position of that
+ * many marbles has on the board, so every generation is given a budget of attempts and stops when
+ * it runs out, with as many positions as it found.
+ *
+ * Usage: MarblePuzzleGenerator output count marbles difficulty [armSize] [seed] [maxAttempts].
+ */
+public class MarblePuzzleGenerator {
+
+  private final BoardTopology topology;
+  private final int marbles;
+  private final int difficulty;
+  private final long nodeLimit;
+  private final int threads;
+  private final int[][] symmetries;
+
+  /**
+   * This is the constructor of the MarblePuzzleGenerator class.
+   *
+   * @param topology the topology of the board.
+   * @param marbles the number of marbles of the positions.
+   * @param difficulty the target difficulty of the positions, and the hardest written.
+   * @param threads the number of worker threads.
+   * @throws IllegalArgumentException if the topology is null, the number of marbles does not fit
+   *     on the board, the difficulty cannot be reached with that many marbles, or the number of
+   *     threads is not positive.
+   */
+  public MarblePuzzleGenerator(BoardTopology topology, int marbles, int difficulty, int threads)
+      throws IllegalArgumentException {
+
+    if (topology == null) {
+      throw new IllegalArgumentException("The topology is invalid.");
+    }
+
+    if (marbles < 1 || marbles >= topology.getCellCount()) {
+      throw new IllegalArgumentException("The number of marbles is invalid.");
+    }
+
+    // Every solution searches at least one position per marble.
+    if (difficulty < difficultyOf(marbles) || difficulty > 18) {
+      throw new IllegalArgumentException("The difficulty is invalid.");
+    }
+
+    if (threads < 1) {
+      throw new IllegalArgumentException("The number of threads must be positive.");
+    }
+
+    this.topology = topology;
+    this.marbles = marbles;
+    this.difficulty = difficulty;
+    this.nodeLimit = difficulty == 18 ? Long.MAX_VALUE : pow10(difficulty);
+    this.threads = threads;
+    this.symmetries = topology.getSymmetries();
+  }
+
+  /**
+   * Generate up to the given number of positions of the target difficulty and write them to the
+   * given output, one line each, together with the easier positions found on the way. Lines are
+   * written and flushed as soon as their position is found. Attempt i of the generation uses
+   * seed + i as its random seed, so the same seed makes the same positions, although the workers
+   * may write them in a different order. The generation stops when enough positions of the target
+   * difficulty were found or when the given number of attempts were made, whichever comes first.
+   *
+   * @param count the number of positions of the target difficulty to generate.
+   * @param maxAttempts the most attempts to make.
+   * @param seed the random seed.
+   * @param out the output.
+   * @return the number of positions of the target difficulty generated, less than count if the
+   *     attempts ran out first.
+   * @throws IllegalArgumentException if the count is negative, the number of attempts is not
+   *     positive or the output is null.
+   * @throws IOException if the output cannot be written.
+   * @throws InterruptedException if the generation is interrupted, which stops the workers.
+   */
+  public int generate(int count, long maxAttempts, long seed, Writer out)
+      throws IllegalArgumentException, IOException, InterruptedException {
+
+    if (count < 0) {
+      throw new IllegalArgumentException("The number of positions must not be negative.");
+    }
+
+    if (maxAttempts <= 0) {
+      throw new IllegalArgumentException("The number of attempts must be positive.");
+    }
+
+    if (out == null) {
+      throw new IllegalArgumentException("The output is invalid.");
+    }
+
+    AtomicInteger remaining = new AtomicInteger(count);
+    AtomicLong attempts = new AtomicLong();
+    Set<PackedPosition> seen = ConcurrentHashMap.newKeySet();
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    List<Future<?>> results = new ArrayList<>();
+
+    for (int i = 0; i < threads; i++) {
+      results.add(workers.submit(() -> {
+        MarbleSolver solver = new MarbleSolver(topology, nodeLimit);
+        while (remaining.get() > 0 && !Thread.currentThread().isInterrupted()) {
+          long attempt = attempts.getAndIncrement();
+          if (attempt >= maxAttempts) {
+            break;
+          }
+          Random random = new Random(seed + attempt);
+          PackedPosition position = playBackwards(random);
+          if (position == null || !seen.add(position.canonical(symmetries))) {
+            continue;
+          }
+          MarbleSolver.Solution solution = solver.solve(position);
+          if (!solution.isSolved()) {
+            continue;
+          }
+          int found = difficultyOf(solution.getNodes());
+          if (found < difficulty || remaining.getAndDecrement() > 0) {
+            write(out, found, solution.getNodes(), position);
+          }
+        }
+        return null;
+      }));
+    }
+
+    workers.shutdown();
+
+    try {
+      for (Future<?> result : results) {
+        result.get();
+      }
+    }
+
+    catch (InterruptedException e) {
+      workers.shutdownNow();
+      throw e;
+    }
+
+    catch (ExecutionException e) {
+      workers.shutdownNow();
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw new IllegalStateException("A worker failed.", e.getCause());
+    }
+
+    return count - Math.max(0, remaining.get());
+  }
+
+  /**
+   * Play the game backwards from a single marble on a random cell until the position has the
+   * number of marbles of the generator.
+   *
+   * @param random the source of random numbers.
+   * @return the position, or null if no backward jump was left before it was reached.
+   */
+  private PackedPosition playBackwards(Random random) {
+
+    int[] triples = topology.getTriples();
+    long[] words = new long[PackedPosition.words(topology)];
+    int cell = random.nextInt(topology.getCellCount());
+    words[cell >>> 6] |= 1L << cell;
+    PackedPosition position = new PackedPosition(words);
+    int[] choices = new int[triples.length / 3];
+
+    for (int count = 1; count < marbles; count++) {
+      int found = 0;
+      for (int t = 0; t < triples.length; t += 3) {
+        if (!position.has(triples[t]) && !position.has(triples[t + 1])
+            && position.has(triples[t + 2])) {
+          choices[found++] = t;
+        }
+      }
+      if (found == 0) {
+        return null;
+      }
+      position = position.jump(triples, choices[random.nextInt(found)]);
+    }
+
+    return position;
+  }
+
+  /**
+   * Write a position to the output as one line, and flush it.
+   *
+   * @param out the output.
+   * @param found the difficulty of the position.
+   * @param nodes the number of positions searched to solve the position.
+   * @param position the position.
+   */
+  private void write(Writer out, int found, long nodes, PackedPosition position) {
+
+    StringBuilder line = new StringBuilder();
+    line.append(found).append(' ').append(nodes).append(' ');
+    for (int cell = 0; cell < topology.getCellCount(); cell++) {
+      line.append(position.has(cell) ? 'O' : '_');
+    }
+    line.append('\n');
+
+    try {
+      synchronized (out) {
+        out.write(line.toString());
+        out.flush();
+      }
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Return the difficulty of a position that took the given number of positions to solve.
+   *
+   * @param nodes the number of positions searched.
+   * @return the number of digits of the number of positions searched.
+   */
+  static int difficultyOf(long nodes) {
+    return Long.toString(nodes).length();
+  }
+
+  /**
+   * Return 10 to the given power.
+   *
+   * @param exponent the power, at most 18.
+   * @return 10 to the power.
+   */
+  private static long pow10(int exponent) {
+
+    long power = 1;
+    for (int i = 0; i < exponent; i++) {
+      power *= 10;
+    }
+    return power;
+  }
+
+  /**
+   * Generate positions of the English board and write them to the given file.
+   *
+   * @param args the file, the number of positions, the number of marbles, the difficulty, the arm
+   *     thickness, the random seed and the most attempts to make.
+   * @throws Exception if the file cannot be written or the generation is interrupted.
+   */
+  public static void main(String[] args) throws Exception {
+
+    Path output = Paths.get(args.length > 0 ? args[0] : "puzzles.txt");
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int marbles = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+    int difficulty = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+    int armSize = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+    long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+    long maxAttempts = args.length > 6 ? Long.parseLong(args[6]) : 1000L * Math.max(1, count);
+
+    MarblePuzzleGenerator generator = new MarblePuzzleGenerator(
+        BoardTopology.of(BoardShape.ENGLISH, armSize), marbles, difficulty,
+        Runtime.getRuntime().availableProcessors());
+
+    long start = System.nanoTime();
+    int made;
+    try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+      made = generator.generate(count, maxAttempts, seed, out);
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    System.out.println(made + " of " + count + " positions of difficulty " + difficulty
+        + " in at most " + maxAttempts + " attempts (" + millis + " ms)");
+  }
+
+}
@@ -0,0 +1,457 @@
+package marbleMVC;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class enumerates every position that can be reached from the start of a game, one level at
+ * a time. Every jump removes one marble, so a level holds all the positions with the same number of
+ * marbles and the positions of the next level only come from the current one.
+ *
+ * The positions of a level are kept in partitions by hash code. The partitions of a level are
+ * expanded in parallel and the new positions are deduplicated within their partition. When a level
+ * has more positions than the spill threshold, every partition is written to its own file instead
+ * and deduplicated on its own, so only one partition per thread is in memory at a time.
+ *
+ * Usage: MarbleReachability armSize sRow sCol [spillThreshold].
+ */
+public class MarbleReachability {
+
+  private static final int PARTITIONS = 64;
+
+  private final BoardTopology topology;
+  private final long spillThreshold;
+  private final int words;
+  private Path directory;
+
+  /**
+   * This class represents the statistics of one level of the enumeration.
+   */
+  public static final class Level {
+
+    private final int marbles;
+    private final long positions;
+    private final long deadEnds;
+
+    /**
+     * This is the constructor of the Level class.
+     *
+     * @param marbles the number of marbles of the positions of the level.
+     * @param positions the number of positions of the level.
+     * @param deadEnds the number of positions of the level without a legal move.
+     */
+    Level(int marbles, long positions, long deadEnds) {
+
+      this.marbles = marbles;
+      this.positions = positions;
+      this.deadEnds = deadEnds;
+    }
+
+    /**
+     * Return the number of marbles of the positions of the level.
+     *
+     * @return the number of marbles of the positions of the level.
+     */
+    public int getMarbles() {
+      return marbles;
+    }
+
+    /**
+     * Return the number of positions of the level.
+     *
+     * @return the number of positions of the level.
+     */
+    public long getPositions() {
+      return positions;
+    }
+
+    /**
+     * Return the number of positions of the level without a legal move.
+     *
+     * @return the number of dead ends of the level.
+     */
+    public long getDeadEnds() {
+      return deadEnds;
+    }
+
+    /**
+     * Return the statistics of the level as one line.
+     *
+     * @return the statistics of the level as one line.
+     */
+    @Override
+    public String toString() {
+      return marbles + " marbles: " + positions + " positions, " + deadEnds + " dead ends";
+    }
+  }
+
+  /**
+   * This class represents one partition of a level. It holds its positions in a hash set until the
+   * level is spilled, and in a file after that.
+   */
+  private final class Partition {
+
+    private Set<PackedPosition> positions = new HashSet<>();
+    private DataOutputStream spill;
+    private Path file;
+    private long size;
+
+    /**
+     * Add a position to the partition.
+     *
+     * @param position the position.
+     * @return true if the position is new and kept in memory, false otherwise.
+     */
+    synchronized boolean add(PackedPosition position) throws IOException {
+
+      if (spill != null) {
+        position.writeTo(spill);
+        return false;
+      }
+
+      return positions.add(position);
+    }
+
+    /**
+     * Write the positions of the partition to its file. Positions added later are appended to the
+     * file.
+     */
+    synchronized void startSpill() throws IOException {
+
+      file = Files.createTempFile(directory(), "level", ".bin");
+      spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+      for (PackedPosition position : positions) {
+        position.writeTo(spill);
+      }
+      positions = null;
+    }
+
+    /**
+     * Finish adding positions. A spilled partition is deduplicated by reading its file back into a
+     * hash set and writing every position once.
+     */
+    void finish() throws IOException {
+
+      if (spill == null) {
+        size = positions.size();
+        return;
+      }
+
+      spill.close();
+      Set<PackedPosition> unique = new HashSet<>();
+      forEachIn(file, unique::add);
+      Files.delete(file);
+
+      file = Files.createTempFile(directory(), "level", ".bin");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+          Files.newOutputStream(file)))) {
+        for (PackedPosition position : unique) {
+          position.writeTo(out);
+        }
+      }
+      size = unique.size();
+    }
+
+    /**
+     * Pass every position of the partition to the given action.
+     *
+     * @param action the action.
+     */
+    void forEach(Consumer<PackedPosition> action) throws IOException {
+
+      if (file == null) {
+        positions.forEach(action);
+      }
+
+      else {
+        forEachIn(file, action);
+      }
+    }
+
+    /**
+     * Delete the file of the partition if it has one.
+     */
+    void delete() throws IOException {
+
+      if (file != null) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * This is the constructor of the MarbleReachability class.
+   *
+   * @param topology the topology of the board.
+   * @param spillThreshold the number of positions of a level above which the level is kept on disk.
+   * @throws IllegalArgumentException if the topology is null or the threshold is not positive.
+   */
+  public MarbleReachability(BoardTopology topology, long spillThreshold)
+      throws IllegalArgumentException {
+
+    if (topology == null) {
+      throw new IllegalArgumentException("The topology is invalid.");
+    }
+
+    if (spillThreshold <= 0) {
+      throw new IllegalArgumentException("The spill threshold must be positive.");
+    }
+
+    this.topology = topology;
+    this.spillThreshold = spillThreshold;
+    this.words = PackedPosition.words(topology);
+  }
+
+  /**
+   * Enumerate every position that can be reached from the given one and return the statistics of
+   * every level, starting with the level of the given position.
+   *
+   * @param start the position to start from.
+   * @param levelDone an action called with the statistics of every level once it is finished.
+   * @return the statistics of every level.
+   * @throws UncheckedIOException if a spilled level cannot be written or read.
+   */
+  public List<Level> enumerate(PackedPosition start, Consumer<Level> levelDone) {
+
+    List<Level> levels = new ArrayList<>();
+    Partition[] current = newLevel();
+
+    try {
+      current[partitionOf(start)].add(start);
+      finish(current);
+
+      for (int marbles = start.count(); marbles > 0; marbles--) {
+        Partition[] next = newLevel();
+        long deadEnds = expand(current, next);
+        long positions = 0;
+        for (Partition partition : current) {
+          positions += partition.size;
+          partition.delete();
+        }
+
+        if (positions == 0) {
+          break;
+        }
+
+        Level level = new Level(marbles, positions, deadEnds);
+        levels.add(level);
+        levelDone.accept(level);
+
+        finish(next);
+        current = next;
+      }
+
+      for (Partition partition : current) {
+        partition.delete();
+      }
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to spill a level.", e);
+    }
+
+    return levels;
+  }
+
+  /**
+   * Expand every position of the current level into the next level, one partition per task.
+   *
+   * @param current the partitions of the current level.
+   * @param next the partitions of the next level.
+   * @return the number of positions of the current level without a legal move.
+   */
+  private long expand(Partition[] current, Partition[] next) throws IOException {
+
+    int[] triples = topology.getTriples();
+    AtomicLong deadEnds = new AtomicLong();
+    AtomicLong inMemory = new AtomicLong();
+    AtomicBoolean spilled = new AtomicBoolean();
+
+    IntStream.range(0, PARTITIONS).parallel().forEach(p -> {
+      try {
+        current[p].forEach(position -> {
+          boolean dead = true;
+          for (int t = 0; t < triples.length; t += 3) {
+            if (position.canJump(triples, t)) {
+              dead = false;
+              add(next, position.jump(triples, t), inMemory, spilled);
+            }
+          }
+          if (dead) {
+            deadEnds.incrementAndGet();
+          }
+        });
+      }
+
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+
+    return deadEnds.get();
+  }
+
+  /**
+   * Add a position to its partition of a level, and spill the level when it has grown too large.
+   */
+  private void add(Partition[] level, PackedPosition position, AtomicLong inMemory,
+      AtomicBoolean spilled) {
+
+    try {
+      if (level[partitionOf(position)].add(position)
+          && inMemory.incrementAndGet() > spillThreshold && spilled.compareAndSet(false, true)) {
+        for (Partition partition : level) {
+          partition.startSpill();
+        }
+      }
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Finish adding positions to every partition of a level, in parallel.
+   *
+   * @param level the partitions of the level.
+   */
+  private void finish(Partition[] level) {
+
+    IntStream.range(0, PARTITIONS).parallel().forEach(p -> {
+      try {
+        level[p].finish();
+      }
+
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  /**
+   * Return the empty partitions of a new level.
+   *
+   * @return the empty partitions of a new level.
+   */
+  private Partition[] newLevel() {
+
+    Partition[] level = new Partition[PARTITIONS];
+    for (int p = 0; p < PARTITIONS; p++) {
+      level[p] = new Partition();
+    }
+    return level;
+  }
+
+  /**
+   * Return the partition of a position. The partition is taken from the highest bits of the hash
+   * code, which leaves the lowest bits for the hash set of the partition.
+   *
+   * @param position the position.
+   * @return the partition of the position.
+   */
+  private int partitionOf(PackedPosition position) {
+    return position.hashCode() >>> (Integer.SIZE - Integer.numberOfTrailingZeros(PARTITIONS));
+  }
+
+  /**
+   * Pass every position of a spilled partition to the given action.
+   *
+   * @param file the file of the partition.
+   * @param action the action.
+   */
+  private void forEachIn(Path file, Consumer<PackedPosition> action) throws IOException {
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(file)))) {
+      while (true) {
+        action.accept(PackedPosition.readFrom(in, words));
+      }
+    }
+
+    catch (EOFException e) {
+      // Every position of the file has been read.
+    }
+  }
+
+  /**
+   * Return the directory for the files of spilled levels, creating it if needed.
+   *
+   * @return the directory for the files of spilled levels.
+   */
+  private synchronized Path directory() throws IOException {
+
+    if (directory == null) {
+      directory = Files.createTempDirectory("marble-reachability");
+      directory.toFile().deleteOnExit();
+    }
+
+    return directory;
+  }
+
+  /**
+   * Return the most heap memory used since the last reset, summed over all heap pools.
+   *
+   * @param reset if the peaks are reset after they are read.
+   * @return the peak heap memory in bytes.
+   */
+  private static long peakHeap(boolean reset) {
+
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+        if (reset) {
+          pool.resetPeakUsage();
+        }
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Enumerate the positions of the English board that start with the given empty slot and print
+   * the statistics of every level.
+   *
+   * @param args the arm thickness, the row and column of the empty slot and the spill threshold.
+   */
+  public static void main(String[] args) {
+
+    int armSize = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    int sRow = args.length > 2 ? Integer.parseInt(args[1]) : armSize;
+    int sCol = args.length > 2 ? Integer.parseInt(args[2]) : armSize;
+    long spillThreshold = args.length > 3 ? Long.parseLong(args[3]) : 5_000_000;
+
+    MarbleModelImpl model = new MarbleModelImpl(armSize, sRow, sCol);
+    MarbleReachability reachability = new MarbleReachability(model.getTopology(), spillThreshold);
+
+    peakHeap(true);
+    long start = System.nanoTime();
+    List<Level> levels = reachability.enumerate(PackedPosition.of(model), System.out::println);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    long positions = levels.stream().mapToLong(Level::getPositions).sum();
+    long deadEnds = levels.stream().mapToLong(Level::getDeadEnds).sum();
+    System.out.println("Total: " + positions + " positions, " + deadEnds + " dead ends in "
+        + millis + " ms, peak heap " + peakHeap(false) / (1024 * 1024) + " MB");
+  }
+
+}
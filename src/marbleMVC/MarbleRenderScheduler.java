@@ -0,0 +1,150 @@
+package marbleMVC;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import javax.swing.Timer;
+
+/**
+ * This class collects the updates of a view and draws them at most once per frame. Marking a cell
+ * or the score board only records its new content, from any thread, so moves can come much faster
+ * than the screen refreshes. Once per frame a Swing timer draws every cell marked since the last
+ * frame and the score board if it was marked, on the event dispatch thread. A cell marked many
+ * times in one frame is drawn once, with its latest status.
+ *
+ * The content is read from the model by the thread that marks it, right after that thread changed
+ * the model, and handed to the event dispatch thread under the lock of the scheduler. Drawing never
+ * reads the model, so games played by other threads, such as autoplay or a replay, are drawn
+ * safely.
+ *
+ * Every frame is timed: the time it takes to draw is added to a MarbleMetrics object, if one is
+ * given, and emitted as a flight recorder event, so a slow click can be traced to its drawing.
+ *
+ * The timer only runs while there is something to draw.
+ */
+final class MarbleRenderScheduler {
+
+  private final ObjIntConsumer<CellStatus> drawCell;
+  private final Consumer<String> drawInfo;
+  private final MarbleMetrics metrics;
+  private final Timer timer;
+  private BitSet dirtyCells = new BitSet();
+  private BitSet drawing = new BitSet();
+  private CellStatus[] dirtyStatuses = new CellStatus[0];
+  private CellStatus[] drawingStatuses = new CellStatus[0];
+  private String dirtyInfo;
+
+  /**
+   * This is the constructor of the MarbleRenderScheduler class.
+   *
+   * @param framesPerSecond the most frames drawn per second.
+   * @param drawCell the action that draws the cell with the given index and status.
+   * @param drawInfo the action that draws the given text in the score board.
+   * @param metrics the metrics to add the time of every frame to, or null to only emit events.
+   * @throws IllegalArgumentException if the number of frames per second is not positive.
+   */
+  MarbleRenderScheduler(int framesPerSecond, ObjIntConsumer<CellStatus> drawCell,
+      Consumer<String> drawInfo, MarbleMetrics metrics) throws IllegalArgumentException {
+
+    if (framesPerSecond <= 0) {
+      throw new IllegalArgumentException("The number of frames per second must be positive.");
+    }
+
+    this.drawCell = drawCell;
+    this.drawInfo = drawInfo;
+    this.metrics = metrics;
+    this.timer = new Timer(Math.max(1, 1000 / framesPerSecond), e -> flush());
+    this.timer.setCoalesce(true);
+  }
+
+  /**
+   * Mark a cell to be drawn with the given status in the next frame.
+   *
+   * @param cell the index of the cell.
+   * @param status the status of the cell.
+   */
+  synchronized void markCell(int cell, CellStatus status) {
+
+    if (cell >= dirtyStatuses.length) {
+      dirtyStatuses = Arrays.copyOf(dirtyStatuses, Math.max(cell + 1, 2 * dirtyStatuses.length));
+    }
+
+    dirtyCells.set(cell);
+    dirtyStatuses[cell] = status;
+    start();
+  }
+
+  /**
+   * Mark the score board to be drawn with the given text in the next frame.
+   *
+   * @param text the text of the score board.
+   */
+  synchronized void markInfo(String text) {
+
+    dirtyInfo = text;
+    start();
+  }
+
+  /**
+   * Start the timer if it is not running.
+   */
+  private void start() {
+
+    if (!timer.isRunning()) {
+      timer.start();
+    }
+  }
+
+  /**
+   * Draw everything marked since the last frame, and stop the timer if nothing was. The marks are
+   * taken under the lock and drawn outside of it, so marking never waits for drawing.
+   */
+  private void flush() {
+
+    String info;
+    BitSet cells;
+    CellStatus[] statuses;
+
+    synchronized (this) {
+      if (dirtyCells.isEmpty() && dirtyInfo == null) {
+        timer.stop();
+        return;
+      }
+      cells = dirtyCells;
+      dirtyCells = drawing;
+      drawing = cells;
+      statuses = dirtyStatuses;
+      dirtyStatuses = drawingStatuses;
+      drawingStatuses = statuses;
+      info = dirtyInfo;
+      dirtyInfo = null;
+    }
+
+    MarbleEvents.RenderFlush event = new MarbleEvents.RenderFlush();
+    event.begin();
+    long start = System.nanoTime();
+    int drawn = cells.cardinality();
+
+    try {
+      for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+        drawCell.accept(statuses[cell], cell);
+      }
+
+      if (info != null) {
+        drawInfo.accept(info);
+      }
+    }
+
+    finally {
+      cells.clear();
+      if (metrics != null) {
+        metrics.getRenderFlushNanos().record(System.nanoTime() - start);
+      }
+      event.cells = drawn;
+      event.info = info != null;
+      event.commit();
+    }
+  }
+
+}
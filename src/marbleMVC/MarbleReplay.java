@@ -0,0 +1,107 @@
+package marbleMVC;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class represents the recording of a game of Marble Solitaire. It stores the marbles of the
+ * board every few moves (a keyframe) together with a log of all the moves, so any position of the
+ * game can be restored from the nearest keyframe with only a handful of jumps.
+ *
+ * A keyframe only keeps one bit per cell of the BoardTopology, so a long game on a large board
+ * costs a small fraction of a full copy of the model per keyframe. Models are only built by
+ * stateAt.
+ */
+public class MarbleReplay {
+
+  private static final int KEYFRAME_INTERVAL = 8;
+  private final BoardTopology topology;
+  private final List<long[]> keyframes = new ArrayList<>();
+  private int[] moves;
+  private int moveCount;
+
+  /**
+   * This is the constructor of the MarbleReplay class. The given model is copied as the first
+   * keyframe, so later changes to the model do not affect the recording.
+   *
+   * @param initial the model at the start of the recording.
+   * @throws IllegalArgumentException if the model is null.
+   */
+  public MarbleReplay(MarbleModel initial) throws IllegalArgumentException {
+
+    if (initial == null) {
+      throw new IllegalArgumentException("The model is invalid.");
+    }
+
+    MarbleModelImpl copy = initial instanceof MarbleModelImpl ? (MarbleModelImpl) initial
+        : new MarbleModelImpl(initial);
+    this.topology = copy.getTopology();
+    this.keyframes.add(copy.packOccupied());
+    this.moves = new int[4 * KEYFRAME_INTERVAL];
+    this.moveCount = 0;
+  }
+
+  /**
+   * Record a successful move of the game. A new keyframe is stored after every KEYFRAME_INTERVAL
+   * moves by replaying the moves since the previous keyframe.
+   *
+   * @param fromRow the row number of the position moved from.
+   * @param fromCol the column number of the position moved from.
+   * @param toRow the row number of the position moved to.
+   * @param toCol the column number of the position moved to.
+   */
+  public void record(int fromRow, int fromCol, int toRow, int toCol) {
+
+    if (4 * this.moveCount == this.moves.length) {
+      this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+    }
+
+    int offset = 4 * this.moveCount;
+    this.moves[offset] = fromRow;
+    this.moves[offset + 1] = fromCol;
+    this.moves[offset + 2] = toRow;
+    this.moves[offset + 3] = toCol;
+    this.moveCount++;
+
+    if (this.moveCount % KEYFRAME_INTERVAL == 0) {
+      this.keyframes.add(stateAt(this.moveCount).packOccupied());
+    }
+  }
+
+  /**
+   * Return the number of moves recorded so far.
+   *
+   * @return the number of moves recorded so far.
+   */
+  public int getMoveCount() {
+    return this.moveCount;
+  }
+
+  /**
+   * Return the game as it was after the given number of moves. The nearest keyframe is unpacked and
+   * at most KEYFRAME_INTERVAL - 1 recorded moves are applied to it in one batch.
+   *
+   * @param move the number of moves played (0 for the initial board).
+   * @return a new model that represents the game after the given number of moves.
+   * @throws IllegalArgumentException if the number of moves is not in the recording.
+   */
+  public MarbleModelImpl stateAt(int move) throws IllegalArgumentException {
+
+    if (move < 0 || move > this.moveCount) {
+      throw new IllegalArgumentException("The move is not in the recording.");
+    }
+
+    int keyframe = Math.min(move / KEYFRAME_INTERVAL, this.keyframes.size() - 1);
+    long[] occupied = this.keyframes.get(keyframe);
+    int score = 0;
+    for (long word : occupied) {
+      score += Long.bitCount(word);
+    }
+
+    MarbleModelImpl state = new MarbleModelImpl(this.topology, occupied, score);
+    state.applyMoves(Arrays.copyOfRange(this.moves, 4 * keyframe * KEYFRAME_INTERVAL, 4 * move));
+    return state;
+  }
+
+}
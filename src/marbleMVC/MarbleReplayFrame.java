@@ -0,0 +1,137 @@
+package marbleMVC;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridLayout;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+
+/**
+ * This class represents the replay mode of the user interface. It shows a recorded game with a
+ * scrubber, so the player can move back and forth through the moves of the game.
+ */
+public class MarbleReplayFrame extends JFrame {
+
+  private static final long serialVersionUID = 1L;
+
+  private final JPanel gameBoard = new JPanel();
+  private final JPanel scrubBoard = new JPanel();
+  private final JLabel moveLabel = new JLabel();
+  private final JSlider scrubber;
+
+  private final MarbleReplay replay;
+  private final JButton[] buttons;
+  private final CellStatus[] shown;
+  private final int boardSize;
+  private final int FRAME_SIZE = 500;
+  private final Color BACKGROUND_COLOR = new Color(121, 166, 217);
+
+  /**
+   * This is the constructor of the MarbleReplayFrame. It sets up the board and the scrubber for all
+   * the moves recorded so far, and shows the initial board of the game.
+   *
+   * @param replay the recording of the game to show.
+   * @throws IllegalArgumentException if the recording is null.
+   */
+  public MarbleReplayFrame(MarbleReplay replay) throws IllegalArgumentException {
+
+    if (replay == null) {
+      throw new IllegalArgumentException("The replay is invalid.");
+    }
+
+    this.replay = replay;
+    this.boardSize = replay.stateAt(0).getArmSize() * 2 + 1;
+    this.buttons = new JButton[boardSize * boardSize];
+    this.shown = new CellStatus[boardSize * boardSize];
+    this.scrubber = new JSlider(0, replay.getMoveCount(), 0);
+
+    this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+    this.setTitle("Marble Solitaire Replay");
+    this.setSize(FRAME_SIZE, FRAME_SIZE);
+    this.setLayout(new BorderLayout());
+    this.add(gameBoard, BorderLayout.CENTER);
+    this.add(scrubBoard, BorderLayout.SOUTH);
+
+    setGameBoard();
+    setScrubBoard();
+    showMove(0);
+    setVisible(true);
+  }
+
+  /**
+   * This method sets up the game board of the replay. The buttons only show the board and do not
+   * respond to clicks.
+   */
+  private void setGameBoard() {
+
+    int fontSize = FRAME_SIZE / boardSize;
+
+    gameBoard.setLayout(new GridLayout(boardSize, boardSize));
+    gameBoard.setBackground(Color.WHITE);
+
+    for (int i = 0; i < buttons.length; i++) {
+      buttons[i] = new JButton();
+      gameBoard.add(buttons[i]);
+      buttons[i].setBackground(Color.WHITE);
+      buttons[i].setFont(new Font("Arial", Font.BOLD, fontSize));
+      buttons[i].setFocusable(false);
+    }
+  }
+
+  /**
+   * This method sets up the scrubber of the replay. Dragging the scrubber shows the board after the
+   * selected number of moves.
+   */
+  private void setScrubBoard() {
+
+    moveLabel.setFont(new Font("Arial", Font.BOLD, 20));
+
+    scrubber.addChangeListener(e -> {showMove(scrubber.getValue());});
+
+    scrubBoard.setLayout(new BorderLayout());
+    scrubBoard.setBackground(BACKGROUND_COLOR);
+    scrubBoard.add(scrubber, BorderLayout.CENTER);
+    scrubBoard.add(moveLabel, BorderLayout.EAST);
+  }
+
+  /**
+   * Show the board after the given number of moves. Only the buttons whose cell has changed since
+   * the last shown board are updated.
+   *
+   * @param move the number of moves played.
+   */
+  private void showMove(int move) {
+
+    MarbleModel state = replay.stateAt(move);
+
+    for (int i = 0; i < buttons.length; i++) {
+
+      CellStatus status = state.getCellStatus(i / boardSize, i % boardSize);
+
+      if (status == shown[i]) {
+        continue;
+      }
+
+      shown[i] = status;
+
+      if (status == CellStatus.FORBIDDEN) {
+        buttons[i].setVisible(false);
+      }
+
+      else if (status == CellStatus.OCCUPIED) {
+        buttons[i].setText("O");
+      }
+
+      else {
+        buttons[i].setText(" ");
+      }
+    }
+
+    moveLabel.setText(" Move " + move + " / " + replay.getMoveCount() + " ");
+  }
+
+}
@@ -0,0 +1,256 @@
+package marbleMVC;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class represents a server that hosts many games of Marble Solitaire at the same time. Clients
+ * connect over TCP and play with the line based commands of MarbleServerController. Every
+ * connection is handled by its own virtual thread when the Java runtime supports them, so tens of
+ * thousands of mostly idle connections can be kept open on one JVM.
+ *
+ * A line may have up to MAX_LINE_LENGTH characters, enough for a SYNC command of a few thousand
+ * moves. A longer line is read to its end and answered with ERROR, and the connection stays open.
+ */
+public class MarbleServer implements AutoCloseable {
+
+  private static final int DEFAULT_PORT = 4444;
+  private static final int BACKLOG = 4096;
+  private static final int BUFFER_SIZE = 256;
+  static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  private final MarbleSessionRegistry registry;
+  private final ServerSocket serverSocket;
+  private final ExecutorService connections;
+  private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+
+  /**
+   * This class represents the failure to read a line that is longer than MAX_LINE_LENGTH. The rest
+   * of the line has been read when it is thrown, so the next line can still be read.
+   */
+  static final class LineTooLongException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * This is the constructor of the LineTooLongException class.
+     */
+    LineTooLongException() {
+      super("Line too long.");
+    }
+  }
+
+  /**
+   * This is the constructor of the MarbleServer class. It binds the server to the given port of the
+   * given address, but does not accept connections until start is called.
+   *
+   * @param address the address to listen on.
+   * @param port the port to listen on, or 0 for any free port.
+   * @param registry the registry of all the games of the server.
+   * @throws IOException if the server cannot be bound to the port.
+   * @throws IllegalArgumentException if the registry is null.
+   */
+  public MarbleServer(InetAddress address, int port, MarbleSessionRegistry registry)
+      throws IOException, IllegalArgumentException {
+
+    if (registry == null) {
+      throw new IllegalArgumentException("The registry is invalid.");
+    }
+
+    this.registry = registry;
+    this.serverSocket = new ServerSocket(port, BACKLOG, address);
+    this.connections = newConnectionExecutor();
+  }
+
+  /**
+   * Return an executor that runs every task on a new virtual thread. On Java runtimes without
+   * virtual threads, it falls back to a cached pool of platform threads.
+   *
+   * @return an executor for connections.
+   */
+  static ExecutorService newConnectionExecutor() {
+
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  /**
+   * Return the port the server is listening on.
+   *
+   * @return the port the server is listening on.
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Start accepting connections on a background thread.
+   */
+  public void start() {
+
+    Thread acceptor = new Thread(this::acceptConnections, "marble-server-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+  }
+
+  /**
+   * Accept connections until the server is closed.
+   */
+  private void acceptConnections() {
+
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        connections.execute(() -> handle(socket));
+      }
+
+      catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          System.err.println("Failed to accept a connection: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Execute the commands of one connection until the client closes it. The connection uses small
+   * buffers of its own instead of readers and writers, which keeps the memory of idle connections
+   * low. The line buffer is shrunk again after a long line.
+   *
+   * @param socket the socket of the connection.
+   */
+  private void handle(Socket socket) {
+
+    MarbleServerController controller = new MarbleServerController(registry);
+    openSockets.add(socket);
+
+    try (Socket s = socket) {
+      InputStream in = new BufferedInputStream(s.getInputStream(), BUFFER_SIZE);
+      OutputStream out = s.getOutputStream();
+      StringBuilder line = new StringBuilder();
+
+      while (true) {
+        String reply;
+        try {
+          if (!readLine(in, line)) {
+            break;
+          }
+          reply = controller.execute(line.toString());
+        }
+        catch (LineTooLongException e) {
+          reply = "ERROR " + e.getMessage();
+        }
+        out.write((reply + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        if (line.capacity() > BUFFER_SIZE) {
+          line.setLength(0);
+          line.trimToSize();
+        }
+      }
+    }
+
+    catch (SocketException e) {
+      // The client has gone away, which ends the connection like closing it does.
+    }
+
+    catch (IOException e) {
+      System.err.println("Connection failed: " + e.getMessage());
+    }
+
+    finally {
+      openSockets.remove(socket);
+    }
+  }
+
+  /**
+   * Read a single line of a connection without the line terminator.
+   *
+   * @param in the input of the connection.
+   * @param line the builder that receives the line.
+   * @return true if a line was read, false if the connection is closed.
+   * @throws LineTooLongException if the line is longer than MAX_LINE_LENGTH, after the rest of it
+   *     was read.
+   * @throws IOException if the line cannot be read.
+   */
+  static boolean readLine(InputStream in, StringBuilder line) throws IOException {
+
+    line.setLength(0);
+    boolean tooLong = false;
+
+    for (int b = in.read(); b != '\n'; b = in.read()) {
+
+      if (b == -1) {
+        if (tooLong) {
+          throw new LineTooLongException();
+        }
+        return line.length() > 0;
+      }
+
+      if (line.length() == MAX_LINE_LENGTH) {
+        // Keep reading to the end of the line, so the connection can go on with the next one.
+        tooLong = true;
+        line.setLength(0);
+      }
+
+      if (b != '\r' && !tooLong) {
+        line.append((char) b);
+      }
+    }
+
+    if (tooLong) {
+      throw new LineTooLongException();
+    }
+
+    return true;
+  }
+
+  /**
+   * Stop accepting connections and close all the open ones.
+   */
+  @Override
+  public void close() throws IOException {
+
+    serverSocket.close();
+
+    for (Socket socket : openSockets) {
+      socket.close();
+    }
+
+    connections.shutdown();
+
+  }
+
+  /**
+   * Run a Marble Solitaire server on the loopback address.
+   *
+   * @param args the port to listen on (optional, 4444 by default).
+   * @throws IOException if the server cannot be started.
+   */
+  public static void main(String[] args) throws IOException {
+
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    MarbleServer server = new MarbleServer(InetAddress.getLoopbackAddress(), port,
+        new MarbleSessionRegistry());
+    System.out.println("Marble Solitaire server listening on port " + server.getPort());
+    server.acceptConnections();
+  }
+
+}
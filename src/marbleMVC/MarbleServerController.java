@@ -0,0 +1,244 @@
+package marbleMVC;
+
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This is a Controller for Marble Solitaire games played over a MarbleServer connection: it parses
+ * the commands of one connection, executes them using the model of the current session and returns
+ * the reply for the client. Every command and every reply is a single line of text:
+ *
+ * <pre>
+ * NEW [armSize [sRow sCol]]  start a new game and join it        OK id
+ * JOIN id                    join an existing game               OK id
+ * MOVE fromRow fromCol toRow toCol                               OK score
+ * SYNC fromRow fromCol toRow toCol ...  all the moves or none    OK score
+ * STATE                      the board, rows separated by '|'    OK state
+ * SCORE                                                          OK score
+ * OVER                       if the game is over                 OK true|false
+ * END                        remove the current game             OK
+ * </pre>
+ *
+ * A command that cannot be executed is answered with ERROR and a message. An unexpected failure of
+ * the model or of the store is logged as a warning and answered with ERROR as well. A line can hold
+ * MarbleServer.MAX_LINE_LENGTH characters, which is a few thousand moves of SYNC; a longer
+ * sequence can be sent as several SYNC commands, each of them made entirely or not at all. Games
+ * larger than MAX_ARM_SIZE are refused, so a client cannot make the server build a board that does
+ * not fit in its memory.
+ */
+public class MarbleServerController {
+
+  static final int MAX_ARM_SIZE = 101;
+  private static final Logger LOGGER = Logger.getLogger(MarbleServerController.class.getName());
+
+  private final MarbleSessionRegistry registry;
+  private long sessionId;
+
+  /**
+   * This is the constructor of the MarbleServerController class.
+   *
+   * @param registry the registry of all the games of the server.
+   * @throws IllegalArgumentException if the registry is null.
+   */
+  public MarbleServerController(MarbleSessionRegistry registry) throws IllegalArgumentException {
+
+    if (registry == null) {
+      throw new IllegalArgumentException("The registry is invalid.");
+    }
+
+    this.registry = registry;
+    this.sessionId = -1;
+  }
+
+  /**
+   * Execute a single command and return the reply for the client.
+   *
+   * @param line the command sent by the client.
+   * @return the reply for the client.
+   */
+  public String execute(String line) {
+
+    String[] words = line.trim().split("\\s+");
+
+    try {
+      switch (words[0].toUpperCase()) {
+        case "NEW":
+          return newGame(words);
+        case "JOIN":
+          checkLength(words, 2);
+          if (!registry.contains(parse(words[1]))) {
+            return "ERROR No game with session id " + parse(words[1]) + ".";
+          }
+          this.sessionId = parse(words[1]);
+          return "OK " + sessionId;
+        case "MOVE":
+          checkLength(words, 5);
+          return move(parse(words[1]), parse(words[2]), parse(words[3]), parse(words[4]));
+        case "SYNC":
+          return sync(words);
+        case "STATE":
+          return "OK " + withGame(model -> model.getGameState().replace('\n', '|'));
+        case "SCORE":
+          return "OK " + withGame(MarbleModel::getScore);
+        case "OVER":
+          return "OK " + withGame(MarbleModel::isGameOver);
+        case "END":
+          registry.remove(sessionId);
+          this.sessionId = -1;
+          return "OK";
+        default:
+          return "ERROR Unknown command.";
+      }
+    }
+
+    catch (IllegalArgumentException e) {
+      return "ERROR " + e.getMessage();
+    }
+
+    // A failure of the model or of the store ends the command, not the connection. It is logged
+    // with its stack trace, since the client only sees that the command failed.
+    catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Command " + words[0] + " of session " + sessionId + " failed.", e);
+      return "ERROR The command failed.";
+    }
+  }
+
+  /**
+   * Start a new game with one of the methods of MarbleModelFactory and join it.
+   *
+   * @param words the words of the command.
+   * @return the reply for the client.
+   */
+  private String newGame(String[] words) {
+
+    MarbleModel model;
+
+    if (words.length == 1) {
+      model = MarbleModelFactory.create();
+    }
+
+    else if (words.length == 2) {
+      model = MarbleModelFactory.create(parseArmSize(words[1]));
+    }
+
+    else {
+      checkLength(words, 4);
+      model = MarbleModelFactory.create(parseArmSize(words[1]), parse(words[2]), parse(words[3]));
+    }
+
+    this.sessionId = registry.create(model);
+    return "OK " + sessionId;
+  }
+
+  /**
+   * Make a move in the current game.
+   *
+   * @return the reply for the client.
+   */
+  private String move(int fromRow, int fromCol, int toRow, int toCol) {
+
+    return "OK " + withGame(model -> {
+      model.move(fromRow, fromCol, toRow, toCol);
+      return model.getScore();
+    });
+  }
+
+  /**
+   * Make a sequence of moves in the current game at once. If one of them is not possible, none is
+   * made and the reply tells which one.
+   *
+   * @param words the words of the command, four for every move after the first.
+   * @return the reply for the client.
+   */
+  private String sync(String[] words) {
+
+    if (words.length < 5 || (words.length - 1) % 4 != 0) {
+      throw new IllegalArgumentException("Wrong number of arguments.");
+    }
+
+    int[] moves = new int[words.length - 1];
+    for (int i = 0; i < moves.length; i++) {
+      moves[i] = parse(words[i + 1]);
+    }
+
+    int[] result = withGame(model -> new int[] {model.applyMoves(moves), model.getScore()});
+
+    if (result[0] >= 0) {
+      return "ERROR Move " + (result[0] + 1) + " is not possible.";
+    }
+
+    return "OK " + result[1];
+  }
+
+  /**
+   * Apply an action to the game of the current session. Actions on the same game from different
+   * connections are executed one at a time.
+   *
+   * @param action the action.
+   * @param <T> the type of the result.
+   * @return the result of the action.
+   * @throws IllegalArgumentException if the connection has not joined a game.
+   */
+  private <T> T withGame(Function<MarbleModel, T> action) throws IllegalArgumentException {
+
+    if (sessionId == -1) {
+      throw new IllegalArgumentException("No game joined.");
+    }
+
+    return registry.apply(sessionId, action);
+  }
+
+  /**
+   * Check that a command has the expected number of words.
+   *
+   * @param words the words of the command.
+   * @param length the expected number of words.
+   * @throws IllegalArgumentException if the number of words is different.
+   */
+  private void checkLength(String[] words, int length) throws IllegalArgumentException {
+
+    if (words.length != length) {
+      throw new IllegalArgumentException("Wrong number of arguments.");
+    }
+  }
+
+  /**
+   * Parse the arm thickness of a new game.
+   *
+   * @param word the argument.
+   * @return the arm thickness.
+   * @throws IllegalArgumentException if the argument is not an integer or is larger than
+   *     MAX_ARM_SIZE.
+   */
+  private int parseArmSize(String word) throws IllegalArgumentException {
+
+    int armSize = parse(word);
+
+    if (armSize > MAX_ARM_SIZE) {
+      throw new IllegalArgumentException("The arm thickness must be at most " + MAX_ARM_SIZE
+          + ".");
+    }
+
+    return armSize;
+  }
+
+  /**
+   * Parse a single integer argument of a command.
+   *
+   * @param word the argument.
+   * @return the value of the argument.
+   * @throws IllegalArgumentException if the argument is not an integer.
+   */
+  private int parse(String word) throws IllegalArgumentException {
+
+    try {
+      return Integer.parseInt(word);
+    }
+
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number " + word + ".");
+    }
+  }
+
+}
@@ -0,0 +1,109 @@
+package marbleMVC;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * This class represents the registry of all the games hosted by a MarbleServer. Every game is
+ * identified by a session id, so a player can leave a game on one connection and join it again on
+ * another one. It is safe to use from many connections at the same time, and connections playing
+ * different games do not wait for each other.
+ *
+ * The games are kept in a MarbleSessionStore, so only the recently used games stay in memory.
+ */
+public class MarbleSessionRegistry {
+
+  private static final int DEFAULT_CAPACITY = 10000;
+  private final MarbleSessionStore sessions;
+  private final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * This is the first constructor of the MarbleSessionRegistry class. It keeps up to 10000 games in
+   * memory and writes the others to a temporary directory.
+   */
+  public MarbleSessionRegistry() {
+    this(new MarbleSessionStore(DEFAULT_CAPACITY));
+  }
+
+  /**
+   * This is the second constructor of the MarbleSessionRegistry class. It keeps the games in the
+   * given store.
+   *
+   * @param sessions the store of the games.
+   * @throws IllegalArgumentException if the store is null.
+   */
+  public MarbleSessionRegistry(MarbleSessionStore sessions) throws IllegalArgumentException {
+
+    if (sessions == null) {
+      throw new IllegalArgumentException("The store is invalid.");
+    }
+
+    this.sessions = sessions;
+  }
+
+  /**
+   * Register a new game and return its session id.
+   *
+   * @param model the game to register.
+   * @return the session id of the game.
+   * @throws IllegalArgumentException if the model is null.
+   */
+  public long create(MarbleModel model) throws IllegalArgumentException {
+
+    if (model == null) {
+      throw new IllegalArgumentException("The model is invalid.");
+    }
+
+    long id = nextId.getAndIncrement();
+    sessions.put(id, model);
+    return id;
+  }
+
+  /**
+   * Determine if there is a game with the given session id. The games themselves can only be
+   * reached through apply.
+   *
+   * @param id the session id of the game.
+   * @return true if there is a game with the given session id, false otherwise.
+   */
+  public boolean contains(long id) {
+    return sessions.contains(id);
+  }
+
+  /**
+   * Apply an action to the game with the given session id and return its result. The game is not
+   * written to disk while the action runs, so the action must not keep the game for later.
+   *
+   * @param id the session id of the game.
+   * @param action the action.
+   * @param <T> the type of the result.
+   * @return the result of the action.
+   * @throws IllegalArgumentException if there is no game with the given session id.
+   */
+  public <T> T apply(long id, Function<MarbleModel, T> action) throws IllegalArgumentException {
+    return sessions.apply(id, action);
+  }
+
+  /**
+   * Remove the game with the given session id from the registry.
+   *
+   * @param id the session id of the game.
+   * @throws IllegalArgumentException if there is no game with the given session id.
+   */
+  public void remove(long id) throws IllegalArgumentException {
+
+    if (!sessions.remove(id)) {
+      throw new IllegalArgumentException("No game with session id " + id + ".");
+    }
+  }
+
+  /**
+   * Return the number of games in the registry.
+   *
+   * @return the number of games in the registry.
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+}
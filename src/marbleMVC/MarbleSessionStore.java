@@ -0,0 +1,401 @@
+package marbleMVC;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * This class represents a bounded store of games. The most recently used games are kept in memory.
+ * When there are more games than the capacity, the least recently used one is written to a file as
+ * a MarbleSnapshot and dropped from memory, and it is read back the next time it is used. A game
+ * on disk costs no memory beyond its entry in the store.
+ *
+ * Every game has a lock of its own, so actions on different games run at the same time and only
+ * actions on the same game wait for each other. A game is read from or written to disk while its
+ * own lock is held, never while the order of use of all the games is being updated, so the disk
+ * only slows down the game it belongs to. The locks are ReentrantLocks, which do not pin the
+ * carrier thread of a virtual thread while it waits for the disk.
+ *
+ * The games can only be reached through apply, so a game is never written to disk while another
+ * thread is using it.
+ */
+public class MarbleSessionStore {
+
+  private final int capacity;
+  private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+  private final LinkedHashMap<Long, Slot> hot;
+  private volatile Path directory;
+
+  /**
+   * This class represents the entry of one game in the store, in memory or on disk.
+   */
+  private static final class Slot {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private MarbleModel model;
+    private boolean removed;
+
+    /**
+     * This is the constructor of the Slot class.
+     *
+     * @param model the game.
+     */
+    Slot(MarbleModel model) {
+      this.model = model;
+    }
+  }
+
+  /**
+   * This is the constructor of the MarbleSessionStore class. The files of cold games are written to
+   * a temporary directory that is created when it is needed first.
+   *
+   * @param capacity the maximum number of games kept in memory.
+   * @throws IllegalArgumentException if the capacity is not positive.
+   */
+  public MarbleSessionStore(int capacity) throws IllegalArgumentException {
+    this(capacity, null);
+  }
+
+  /**
+   * This is the constructor of the MarbleSessionStore class.
+   *
+   * @param capacity the maximum number of games kept in memory.
+   * @param directory the directory for the files of cold games.
+   * @throws IllegalArgumentException if the capacity is not positive.
+   */
+  public MarbleSessionStore(int capacity, Path directory) throws IllegalArgumentException {
+
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be positive.");
+    }
+
+    this.capacity = capacity;
+    this.directory = directory;
+    this.hot = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Add a game to the store, replacing any game with the same id.
+   *
+   * @param id the id of the game.
+   * @param model the game.
+   */
+  public void put(long id, MarbleModel model) {
+
+    Slot slot = new Slot(model);
+    List<Map.Entry<Long, Slot>> evicted = List.of();
+    slot.lock.lock();
+
+    try {
+      Slot old = slots.put(id, slot);
+      evicted = touch(id, slot);
+      if (old != null) {
+        old.lock.lock();
+        try {
+          discard(id, old);
+        }
+        finally {
+          old.lock.unlock();
+        }
+      }
+    }
+
+    finally {
+      slot.lock.unlock();
+      spill(evicted);
+    }
+  }
+
+  /**
+   * Determine if there is a game with the given id.
+   *
+   * @param id the id of the game.
+   * @return true if there is a game with the given id, false otherwise.
+   */
+  public boolean contains(long id) {
+    return slots.containsKey(id);
+  }
+
+  /**
+   * Apply an action to the game with the given id and return its result. A cold game is read back
+   * into memory first. The game cannot be evicted while the action runs, and the action must not
+   * keep the game for later. The games evicted to make room are written to disk even if the action
+   * throws.
+   *
+   * @param id the id of the game.
+   * @param action the action.
+   * @param <T> the type of the result.
+   * @return the result of the action.
+   * @throws IllegalArgumentException if there is no game with the given id.
+   */
+  public <T> T apply(long id, Function<MarbleModel, T> action) throws IllegalArgumentException {
+
+    Slot slot = slots.get(id);
+
+    if (slot == null) {
+      throw new IllegalArgumentException("No game with session id " + id + ".");
+    }
+
+    List<Map.Entry<Long, Slot>> evicted = List.of();
+    slot.lock.lock();
+
+    try {
+      if (slot.removed) {
+        throw new IllegalArgumentException("No game with session id " + id + ".");
+      }
+      if (slot.model == null) {
+        slot.model = rehydrate(id);
+      }
+      evicted = touch(id, slot);
+      return action.apply(slot.model);
+    }
+
+    finally {
+      slot.lock.unlock();
+      spill(evicted);
+    }
+  }
+
+  /**
+   * Remove the game with the given id from the store.
+   *
+   * @param id the id of the game.
+   * @return true if the game was in the store, false otherwise.
+   */
+  public boolean remove(long id) {
+
+    Slot slot = slots.remove(id);
+
+    if (slot == null) {
+      return false;
+    }
+
+    slot.lock.lock();
+
+    try {
+      discard(id, slot);
+    }
+
+    finally {
+      slot.lock.unlock();
+    }
+
+    return true;
+  }
+
+  /**
+   * Return the number of games in the store, in memory or on disk.
+   *
+   * @return the number of games in the store.
+   */
+  public int size() {
+    return slots.size();
+  }
+
+  /**
+   * Return the number of games kept in memory.
+   *
+   * @return the number of games kept in memory.
+   */
+  public int hotSize() {
+
+    synchronized (hot) {
+      return hot.size();
+    }
+  }
+
+  /**
+   * Mark a game as the most recently used one and take the least recently used games out of the
+   * order of use until the store is within its capacity. The lock of the game must be held.
+   *
+   * @param id the id of the game.
+   * @param slot the entry of the game.
+   * @return the games to write to disk.
+   */
+  private List<Map.Entry<Long, Slot>> touch(long id, Slot slot) {
+
+    List<Map.Entry<Long, Slot>> evicted = new ArrayList<>();
+
+    synchronized (hot) {
+      hot.put(id, slot);
+      Iterator<Map.Entry<Long, Slot>> eldest = hot.entrySet().iterator();
+      while (hot.size() > capacity) {
+        Map.Entry<Long, Slot> entry = eldest.next();
+        evicted.add(Map.entry(entry.getKey(), entry.getValue()));
+        eldest.remove();
+      }
+    }
+
+    return evicted;
+  }
+
+  /**
+   * Write evicted games to disk and drop them from memory, each under its own lock. A game that was
+   * used again or removed since it was evicted is left alone. A game that cannot be written stays
+   * in memory and is put back in the order of use as the most recent one, so it is not lost and is
+   * evicted again later.
+   *
+   * @param evicted the evicted games.
+   */
+  private void spill(List<Map.Entry<Long, Slot>> evicted) {
+
+    for (Map.Entry<Long, Slot> entry : evicted) {
+      Slot slot = entry.getValue();
+      slot.lock.lock();
+
+      try {
+        boolean used;
+        synchronized (hot) {
+          used = hot.containsKey(entry.getKey());
+        }
+        if (!used && !slot.removed && slot.model != null) {
+          write(entry.getKey(), slot.model);
+          slot.model = null;
+        }
+      }
+
+      catch (UncheckedIOException e) {
+        System.err.println(e.getMessage());
+        synchronized (hot) {
+          hot.put(entry.getKey(), slot);
+        }
+      }
+
+      finally {
+        slot.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Drop a game from memory and from disk. The lock of the game must be held.
+   *
+   * @param id the id of the game.
+   * @param slot the entry of the game.
+   */
+  private void discard(long id, Slot slot) {
+
+    slot.removed = true;
+
+    synchronized (hot) {
+      hot.remove(id, slot);
+    }
+
+    if (slot.model == null) {
+      deleteFile(id);
+    }
+    slot.model = null;
+  }
+
+  /**
+   * Write the snapshot of a game to its file.
+   *
+   * @param id the id of the game.
+   * @param model the game.
+   */
+  private void write(long id, MarbleModel model) {
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(file(id)), 64))) {
+      MarbleSnapshot.of(model).writeTo(out);
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to write game " + id + ".", e);
+    }
+  }
+
+  /**
+   * Read a cold game back into memory and delete its file.
+   *
+   * @param id the id of the game.
+   * @return the game with the given id.
+   * @throws IllegalArgumentException if there is no file for the game.
+   */
+  private MarbleModel rehydrate(long id) throws IllegalArgumentException {
+
+    if (directory == null || !Files.exists(file(id))) {
+      throw new IllegalArgumentException("No game with session id " + id + ".");
+    }
+
+    MarbleModel model;
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(file(id)), 64))) {
+      model = MarbleSnapshot.readFrom(in).toModel();
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to read game " + id + ".", e);
+    }
+
+    deleteFile(id);
+    return model;
+  }
+
+  /**
+   * Delete the file of a game if there is one.
+   *
+   * @param id the id of the game.
+   * @return true if a file was deleted, false otherwise.
+   */
+  private boolean deleteFile(long id) {
+
+    if (directory == null) {
+      return false;
+    }
+
+    try {
+      return Files.deleteIfExists(file(id));
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to delete game " + id + ".", e);
+    }
+  }
+
+  /**
+   * Return the file of a game, creating the directory of the store if needed.
+   *
+   * @param id the id of the game.
+   * @return the file of the game.
+   */
+  private Path file(long id) {
+
+    if (directory == null) {
+      createDirectory();
+    }
+
+    return directory.resolve(id + ".snap");
+  }
+
+  /**
+   * Create the temporary directory of the store, once.
+   */
+  private synchronized void createDirectory() {
+
+    try {
+      if (directory == null) {
+        directory = Files.createTempDirectory("marble-sessions");
+      }
+    }
+
+    catch (IOException e) {
+      throw new UncheckedIOException("Failed to create the session directory.", e);
+    }
+  }
+
+}
@@ -0,0 +1,181 @@
+package marbleMVC;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class represents a compact, immutable snapshot of a game of Marble Solitaire. Instead of a
+ * board of CellStatus, it keeps one bit per cell of the BoardTopology together with the score.
+ *
+ * A written snapshot has a fixed layout for each board: the magic number, the version of the
+ * layout, the shape, the arm thickness and the score as ints, followed by the packed marbles as
+ * longs. The snapshot of a standard board takes 28 bytes. Snapshots of version 1 have no shape and
+ * are read as English boards.
+ *
+ * Snapshots are read back from files and from other processes, so a snapshot is checked before it
+ * is trusted: its arm thickness must be at most MAX_ARM_SIZE before the board is built, and its
+ * score must be the number of marbles on the board.
+ */
+public final class MarbleSnapshot {
+
+  static final int MAX_ARM_SIZE = 255;
+  private static final int MAGIC = 0x4D52424C;
+  private static final int VERSION = 2;
+
+  private final BoardTopology topology;
+  private final int score;
+  private final long[] occupied;
+
+  /**
+   * This is the constructor of the MarbleSnapshot class.
+   *
+   * @param topology the topology of the board.
+   * @param score the number of marbles on the board.
+   * @param occupied the packed marbles of the board.
+   */
+  private MarbleSnapshot(BoardTopology topology, int score, long[] occupied) {
+
+    this.topology = topology;
+    this.score = score;
+    this.occupied = occupied;
+  }
+
+  /**
+   * Return the snapshot of the given game. Models other than MarbleModelImpl are taken to be played
+   * on the English board.
+   *
+   * @param model the game.
+   * @return the snapshot of the game.
+   * @throws IllegalArgumentException if the model is null.
+   */
+  public static MarbleSnapshot of(MarbleModel model) throws IllegalArgumentException {
+
+    if (model == null) {
+      throw new IllegalArgumentException("The model is invalid.");
+    }
+
+    if (model instanceof MarbleModelImpl) {
+      MarbleModelImpl impl = (MarbleModelImpl) model;
+      return new MarbleSnapshot(impl.getTopology(), impl.getScore(), impl.packOccupied());
+    }
+
+    BoardTopology topology = BoardTopology.of(BoardShape.ENGLISH, model.getArmSize());
+    long[] occupied = new long[words(topology)];
+
+    for (int cell = 0; cell < topology.getCellCount(); cell++) {
+      if (model.getCellStatus(topology.rowOf(cell), topology.colOf(cell)) == CellStatus.OCCUPIED) {
+        occupied[cell >>> 6] |= 1L << cell;
+      }
+    }
+
+    return new MarbleSnapshot(topology, model.getScore(), occupied);
+  }
+
+  /**
+   * Return the number of words needed for the cells of the given board.
+   *
+   * @param topology the topology of the board.
+   * @return the number of words needed for the cells of the board.
+   */
+  private static int words(BoardTopology topology) {
+    return (topology.getCellCount() + 63) >>> 6;
+  }
+
+  /**
+   * Return a new game that is restored from this snapshot.
+   *
+   * @return a new game that is restored from this snapshot.
+   */
+  public MarbleModelImpl toModel() {
+    return new MarbleModelImpl(topology, occupied, score);
+  }
+
+  /**
+   * Write this snapshot to the given output.
+   *
+   * @param out the output.
+   * @throws IOException if the snapshot cannot be written.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(topology.getShape().ordinal());
+    out.writeInt(topology.getArmSize());
+    out.writeInt(score);
+    for (long word : occupied) {
+      out.writeLong(word);
+    }
+  }
+
+  /**
+   * Read a snapshot from the given input.
+   *
+   * @param in the input.
+   * @return the snapshot that was read.
+   * @throws IOException if the snapshot cannot be read, or if its arm thickness is invalid or larger
+   *     than MAX_ARM_SIZE, its board has marbles outside of its cells, or its score is not the
+   *     number of marbles on its board.
+   * @throws IllegalArgumentException if the input is not a snapshot of a supported version.
+   */
+  public static MarbleSnapshot readFrom(DataInput in) throws IOException, IllegalArgumentException {
+
+    if (in.readInt() != MAGIC) {
+      throw new IllegalArgumentException("The input is not a Marble Solitaire snapshot.");
+    }
+
+    int version = in.readInt();
+
+    if (version != 1 && version != VERSION) {
+      throw new IllegalArgumentException("Unsupported snapshot version " + version + ".");
+    }
+
+    BoardShape shape = BoardShape.ENGLISH;
+
+    if (version >= 2) {
+      int ordinal = in.readInt();
+      if (ordinal < 0 || ordinal >= BoardShape.values().length) {
+        throw new IllegalArgumentException("Unknown board shape " + ordinal + ".");
+      }
+      shape = BoardShape.values()[ordinal];
+    }
+
+    int armSize = in.readInt();
+
+    if (armSize > MAX_ARM_SIZE) {
+      throw new IOException("The arm thickness " + armSize + " of the snapshot is too large.");
+    }
+
+    BoardTopology topology;
+
+    try {
+      topology = BoardTopology.of(shape, armSize);
+    }
+
+    catch (IllegalArgumentException e) {
+      throw new IOException("The arm thickness " + armSize + " of the snapshot is invalid.", e);
+    }
+
+    int score = in.readInt();
+    long[] occupied = new long[words(topology)];
+    int marbles = 0;
+    for (int i = 0; i < occupied.length; i++) {
+      occupied[i] = in.readLong();
+      marbles += Long.bitCount(occupied[i]);
+    }
+
+    int unused = occupied.length * 64 - topology.getCellCount();
+    if (unused > 0 && occupied[occupied.length - 1] >>> (64 - unused) != 0) {
+      throw new IOException("The snapshot has marbles outside of the board.");
+    }
+
+    if (score != marbles) {
+      throw new IOException("The score " + score + " of the snapshot is not its number of marbles "
+          + marbles + ".");
+    }
+
+    return new MarbleSnapshot(topology, score, occupied);
+  }
+
+}
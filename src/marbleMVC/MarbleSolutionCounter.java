@@ -0,0 +1,368 @@
+package marbleMVC;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class counts how many different sequences of moves lead from a position of a game to a
+ * final position with a given number of marbles, such as the number of solutions that end with a
+ * single marble.
+ *
+ * The number of sequences only depends on the position, and positions that are symmetric have the
+ * same number, so every canonical position is counted once and remembered. This turns the tree of
+ * all the sequences of moves into the much smaller graph of positions. The first few moves are
+ * counted in parallel, and the tasks share what they remember. The counts for every final score
+ * are found in the same walk of the graph, by remembering a histogram of the final scores for
+ * every position instead of a single count.
+ *
+ * Usage: MarbleSolutionCounter armSize sRow sCol [finalScore].
+ */
+public class MarbleSolutionCounter {
+
+  private static final int PARALLEL_DEPTH = 4;
+
+  private final ForkJoinPool pool;
+
+  /**
+   * This is the first constructor of the MarbleSolutionCounter class. It counts on the common
+   * fork-join pool.
+   */
+  public MarbleSolutionCounter() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * This is the second constructor of the MarbleSolutionCounter class.
+   *
+   * @param pool the pool that runs the counting tasks.
+   * @throws IllegalArgumentException if the pool is null.
+   */
+  public MarbleSolutionCounter(ForkJoinPool pool) throws IllegalArgumentException {
+
+    if (pool == null) {
+      throw new IllegalArgumentException("The pool is invalid.");
+    }
+
+    this.pool = pool;
+  }
+
+  /**
+   * This class represents the counting of the sequences from one position, for one final score.
+   */
+  private static final class Count extends RecursiveTask<Long> {
+
+    private static final long serialVersionUID = 1L;
+    private final Search search;
+    private final PackedPosition position;
+    private final int depth;
+
+    /**
+     * This is the constructor of the Count class.
+     *
+     * @param search the search the count belongs to.
+     * @param position the position to count from.
+     * @param depth the number of moves made to reach the position.
+     */
+    Count(Search search, PackedPosition position, int depth) {
+
+      this.search = search;
+      this.position = position;
+      this.depth = depth;
+    }
+
+    /**
+     * Count the sequences from the position. Near the start, every move is counted by its own task;
+     * deeper down, the moves are counted one after another. A position without a legal move that
+     * still has more marbles than the final score ends no sequence.
+     *
+     * @return the number of sequences from the position.
+     */
+    @Override
+    protected Long compute() {
+
+      if (depth >= PARALLEL_DEPTH || position.count() <= search.finalScore) {
+        return search.count(position);
+      }
+
+      int[] triples = search.triples;
+      Count[] moves = new Count[triples.length / 3];
+      int forked = 0;
+
+      for (int t = 0; t < triples.length; t += 3) {
+        if (position.canJump(triples, t)) {
+          moves[forked] = new Count(search, position.jump(triples, t), depth + 1);
+          moves[forked++].fork();
+        }
+      }
+
+      long total = 0;
+      for (int i = 0; i < forked; i++) {
+        total = Math.addExact(total, moves[i].join());
+      }
+      return total;
+    }
+  }
+
+  /**
+   * This class represents the counting of the sequences from one position, for every final score.
+   */
+  private static final class Histogram extends RecursiveTask<long[]> {
+
+    private static final long serialVersionUID = 1L;
+    private final Search search;
+    private final PackedPosition position;
+    private final int depth;
+
+    /**
+     * This is the constructor of the Histogram class.
+     *
+     * @param search the search the count belongs to.
+     * @param position the position to count from.
+     * @param depth the number of moves made to reach the position.
+     */
+    Histogram(Search search, PackedPosition position, int depth) {
+
+      this.search = search;
+      this.position = position;
+      this.depth = depth;
+    }
+
+    /**
+     * Count the sequences from the position for every final score, in parallel near the start as
+     * Count does.
+     *
+     * @return the number of sequences from the position for every final score.
+     */
+    @Override
+    protected long[] compute() {
+
+      if (depth >= PARALLEL_DEPTH) {
+        return search.histogram(position);
+      }
+
+      int[] triples = search.triples;
+      Histogram[] moves = new Histogram[triples.length / 3];
+      int forked = 0;
+
+      for (int t = 0; t < triples.length; t += 3) {
+        if (position.canJump(triples, t)) {
+          moves[forked] = new Histogram(search, position.jump(triples, t), depth + 1);
+          moves[forked++].fork();
+        }
+      }
+
+      if (forked == 0) {
+        return search.histogram(position);
+      }
+
+      long[] total = new long[position.count()];
+      for (int i = 0; i < forked; i++) {
+        Search.add(total, moves[i].join());
+      }
+      return Search.trim(total);
+    }
+  }
+
+  /**
+   * This class represents the state shared by all the tasks of one count: the board and the counts
+   * remembered for the canonical positions, either for one final score or for all of them.
+   */
+  private static final class Search {
+
+    private final int[] triples;
+    private final int[][] symmetries;
+    private final int finalScore;
+    private final Map<PackedPosition, Long> memo = new ConcurrentHashMap<>();
+    private final Map<PackedPosition, long[]> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * This is the constructor of the Search class.
+     *
+     * @param topology the topology of the board.
+     * @param finalScore the number of marbles of the final positions to count, ignored when
+     *     counting for every final score.
+     */
+    Search(BoardTopology topology, int finalScore) {
+
+      this.triples = topology.getTriples();
+      this.symmetries = topology.getSymmetries();
+      this.finalScore = finalScore;
+    }
+
+    /**
+     * Return the number of sequences from a position, looking it up if it has been counted before.
+     *
+     * @param position the position.
+     * @return the number of sequences from the position.
+     */
+    long count(PackedPosition position) {
+
+      int marbles = position.count();
+
+      if (marbles <= finalScore) {
+        return marbles == finalScore && !position.hasJump(triples) ? 1 : 0;
+      }
+
+      PackedPosition key = position.canonical(symmetries);
+      Long known = memo.get(key);
+
+      if (known != null) {
+        return known;
+      }
+
+      long total = 0;
+
+      for (int t = 0; t < triples.length; t += 3) {
+        if (position.canJump(triples, t)) {
+          total = Math.addExact(total, count(position.jump(triples, t)));
+        }
+      }
+
+      memo.put(key, total);
+      return total;
+    }
+
+    /**
+     * Return the number of sequences from a position for every final score, looking it up if it
+     * has been counted before. Entry s is the number of sequences that end with s marbles, and the
+     * entries after the last one that is not zero are left out. A remembered histogram is shared,
+     * so it must not be changed.
+     *
+     * @param position the position.
+     * @return the number of sequences from the position for every final score.
+     */
+    long[] histogram(PackedPosition position) {
+
+      int marbles = position.count();
+
+      if (!position.hasJump(triples)) {
+        long[] end = new long[marbles + 1];
+        end[marbles] = 1;
+        return end;
+      }
+
+      PackedPosition key = position.canonical(symmetries);
+      long[] known = histograms.get(key);
+
+      if (known != null) {
+        return known;
+      }
+
+      // Every move takes a marble, so no sequence from here ends with all the marbles.
+      long[] total = new long[marbles];
+
+      for (int t = 0; t < triples.length; t += 3) {
+        if (position.canJump(triples, t)) {
+          add(total, histogram(position.jump(triples, t)));
+        }
+      }
+
+      total = trim(total);
+      histograms.put(key, total);
+      return total;
+    }
+
+    /**
+     * Add a histogram to a histogram that is at least as long.
+     *
+     * @param total the histogram to add to.
+     * @param counts the histogram to add.
+     * @throws ArithmeticException if a number does not fit in a long.
+     */
+    static void add(long[] total, long[] counts) {
+
+      for (int s = 0; s < counts.length; s++) {
+        total[s] = Math.addExact(total[s], counts[s]);
+      }
+    }
+
+    /**
+     * Return a histogram without the entries after the last one that is not zero.
+     *
+     * @param counts the histogram.
+     * @return the trimmed histogram.
+     */
+    static long[] trim(long[] counts) {
+
+      int length = counts.length;
+      while (length > 0 && counts[length - 1] == 0) {
+        length--;
+      }
+      return length == counts.length ? counts : Arrays.copyOf(counts, length);
+    }
+  }
+
+  /**
+   * Return the number of sequences of moves from the current position of the game that end with a
+   * single marble.
+   *
+   * @param model the game.
+   * @return the number of solutions from the current position.
+   * @throws IllegalArgumentException if the model is null.
+   * @throws ArithmeticException if the number does not fit in a long.
+   */
+  public long countSolutions(MarbleModel model) throws IllegalArgumentException {
+    return count(model, 1);
+  }
+
+  /**
+   * Return the number of sequences of moves from the current position of the game that end in a
+   * position without a legal move and with the given number of marbles. A position without a legal
+   * move has one sequence, the empty one, if it has the given number of marbles.
+   *
+   * @param model the game.
+   * @param finalScore the number of marbles of the final positions.
+   * @return the number of sequences that end with the given number of marbles.
+   * @throws IllegalArgumentException if the model is null.
+   * @throws ArithmeticException if the number does not fit in a long.
+   */
+  public long count(MarbleModel model, int finalScore) throws IllegalArgumentException {
+
+    PackedPosition start = PackedPosition.of(model);
+    Search search = new Search(PackedPosition.topologyOf(model), finalScore);
+    return pool.invoke(new Count(search, start, 0));
+  }
+
+  /**
+   * Return the number of sequences of moves from the current position of the game for every final
+   * score. Entry s of the result is the number of sequences that end with s marbles and no legal
+   * move. Every final score is counted in one walk of the positions.
+   *
+   * @param model the game.
+   * @return the number of sequences for every final score, from 0 to the current score.
+   * @throws IllegalArgumentException if the model is null.
+   * @throws ArithmeticException if a number does not fit in a long.
+   */
+  public long[] countByFinalScore(MarbleModel model) throws IllegalArgumentException {
+
+    PackedPosition start = PackedPosition.of(model);
+    Search search = new Search(PackedPosition.topologyOf(model), 0);
+    long[] counts = pool.invoke(new Histogram(search, start, 0));
+    return Arrays.copyOf(counts, start.count() + 1);
+  }
+
+  /**
+   * Count the solutions of the English board that starts with the given empty slot.
+   *
+   * @param args the arm thickness, the row and column of the empty slot and the final score.
+   */
+  public static void main(String[] args) {
+
+    int armSize = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    int sRow = args.length > 2 ? Integer.parseInt(args[1]) : armSize;
+    int sCol = args.length > 2 ? Integer.parseInt(args[2]) : armSize;
+    int finalScore = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+    long start = System.nanoTime();
+    long count = new MarbleSolutionCounter().count(new MarbleModelImpl(armSize, sRow, sCol),
+        finalScore);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    System.out.println(count + " sequences end with " + finalScore + " marbles (" + millis
+        + " ms)");
+  }
+
+}
@@ -0,0 +1,182 @@
+package marbleMVC;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class searches for a solution of a game: a sequence of moves that leaves a single marble on
+ * the board. The search tries the moves depth first and remembers every position it has left
+ * without a solution, in canonical form, so positions reached again by other orders of the same
+ * moves or by symmetric moves are not searched twice.
+ *
+ * A solver is not thread safe, but it is cheap to create, so every thread should use its own.
+ */
+public class MarbleSolver {
+
+  private final BoardTopology topology;
+  private final int[] triples;
+  private final int[][] symmetries;
+  private final long nodeLimit;
+  private final Set<PackedPosition> dead = new HashSet<>();
+  private long nodes;
+
+  /**
+   * This class represents the result of a search: the moves of the solution, if one was found, and
+   * the number of positions searched.
+   */
+  public static final class Solution {
+
+    private final List<int[]> moves;
+    private final long nodes;
+
+    /**
+     * This is the constructor of the Solution class.
+     *
+     * @param moves the moves of the solution, or null if there is none.
+     * @param nodes the number of positions searched.
+     */
+    Solution(List<int[]> moves, long nodes) {
+
+      this.moves = moves;
+      this.nodes = nodes;
+    }
+
+    /**
+     * Determine if a solution was found.
+     *
+     * @return true if a solution was found, false otherwise.
+     */
+    public boolean isSolved() {
+      return moves != null;
+    }
+
+    /**
+     * Return the moves of the solution in order. Every move is the row and column of the marble
+     * and the row and column it jumps to, as taken by MarbleModel.move.
+     *
+     * @return the moves of the solution.
+     * @throws IllegalStateException if no solution was found.
+     */
+    public List<int[]> getMoves() throws IllegalStateException {
+
+      if (moves == null) {
+        throw new IllegalStateException("No solution was found.");
+      }
+
+      return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Return the moves of the solution packed into one array, four numbers per move, as taken by
+     * MarbleModel.applyMoves.
+     *
+     * @return the packed moves of the solution.
+     * @throws IllegalStateException if no solution was found.
+     */
+    public int[] getPackedMoves() throws IllegalStateException {
+
+      int[] packed = new int[4 * getMoves().size()];
+      for (int i = 0; i < moves.size(); i++) {
+        System.arraycopy(moves.get(i), 0, packed, 4 * i, 4);
+      }
+      return packed;
+    }
+
+    /**
+     * Return the number of positions searched, a measure of how hard the solution was to find.
+     *
+     * @return the number of positions searched.
+     */
+    public long getNodes() {
+      return nodes;
+    }
+  }
+
+  /**
+   * This is the constructor of the MarbleSolver class.
+   *
+   * @param topology the topology of the board.
+   * @param nodeLimit the number of positions after which a search gives up.
+   * @throws IllegalArgumentException if the topology is null or the limit is not positive.
+   */
+  public MarbleSolver(BoardTopology topology, long nodeLimit) throws IllegalArgumentException {
+
+    if (topology == null) {
+      throw new IllegalArgumentException("The topology is invalid.");
+    }
+
+    if (nodeLimit <= 0) {
+      throw new IllegalArgumentException("The node limit must be positive.");
+    }
+
+    this.topology = topology;
+    this.triples = topology.getTriples();
+    this.symmetries = topology.getSymmetries();
+    this.nodeLimit = nodeLimit;
+  }
+
+  /**
+   * Search for a solution from the given position. Every search starts with nothing remembered, so
+   * the number of positions searched only depends on the given position.
+   *
+   * @param start the position to start from.
+   * @return the result of the search. No solution is found if there is none or if the search
+   *     reached the node limit first.
+   * @throws IllegalArgumentException if the position is null.
+   */
+  public Solution solve(PackedPosition start) throws IllegalArgumentException {
+
+    if (start == null) {
+      throw new IllegalArgumentException("The position is invalid.");
+    }
+
+    nodes = 0;
+    dead.clear();
+    List<int[]> moves = new ArrayList<>();
+    boolean solved = search(start, moves);
+    return new Solution(solved ? moves : null, nodes);
+  }
+
+  /**
+   * Search for a solution from a position, depth first.
+   *
+   * @param position the position.
+   * @param moves the moves made to reach the position, which the solution is appended to.
+   * @return true if a solution was found, false otherwise.
+   */
+  private boolean search(PackedPosition position, List<int[]> moves) {
+
+    nodes++;
+
+    if (position.count() == 1) {
+      return true;
+    }
+
+    PackedPosition key = position.canonical(symmetries);
+
+    if (nodes > nodeLimit || dead.contains(key)) {
+      return false;
+    }
+
+    for (int t = 0; t < triples.length; t += 3) {
+      if (position.canJump(triples, t)) {
+        moves.add(new int[] {topology.rowOf(triples[t]), topology.colOf(triples[t]),
+            topology.rowOf(triples[t + 2]), topology.colOf(triples[t + 2])});
+        if (search(position.jump(triples, t), moves)) {
+          return true;
+        }
+        moves.remove(moves.size() - 1);
+      }
+    }
+
+    // A position left because of the node limit may still have a solution.
+    if (nodes <= nodeLimit) {
+      dead.add(key);
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,525 @@
+package marbleMVC;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class searches for a solution of a game with several worker processes on the same machine,
+ * so the search is not limited by the heap and the garbage collector of a single JVM.
+ *
+ * The coordinator plays the first moves itself, level by level, until it has a few units of work
+ * for every worker: positions together with the moves that lead to them. It then starts the workers
+ * as MarbleSolverWorker processes, which connect back over the loopback address and take units one
+ * at a time. A worker that asks for a unit when there is none left is told to wait, and the busy
+ * workers are asked to give away the untried moves nearest to the root of their search, which the
+ * waiting workers then take. Workers report the dead positions they find in batches, and receive
+ * the ones found by the others, so no two workers search below the same dead position for long.
+ *
+ * The unit of a worker whose connection fails is put back for the others. If every worker is gone
+ * while there is still work left, the search fails with an IOException instead of waiting forever.
+ *
+ * Every message starts with a one byte opcode and is written with DataOutput. Positions are written
+ * as their words, and a unit as the number of ints of its moves, the moves and its position.
+ *
+ * Usage: MarbleSolverCoordinator workers [armSize [sRow sCol]].
+ */
+public class MarbleSolverCoordinator {
+
+  static final byte REQUEST = 1;
+  static final byte SYNC = 2;
+  static final byte DONATE = 3;
+  static final byte FINISHED = 4;
+  static final byte SOLVED = 5;
+
+  static final byte UNIT = 1;
+  static final byte WAIT = 2;
+  static final byte STOP = 3;
+
+  static final byte DONATE_FLAG = 1;
+  static final byte STOP_FLAG = 2;
+
+  private static final int UNITS_PER_WORKER = 4;
+  private static final int SHARED_DEPTH = 12;
+  private static final int CONNECT_TIMEOUT_MILLIS = 60_000;
+  private static final int CHECK_INTERVAL_MILLIS = 1_000;
+
+  private final int workers;
+  private final Deque<Unit> queue = new ArrayDeque<>();
+  private final List<PackedPosition> sharedDead = new ArrayList<>();
+  private final Set<PackedPosition> sharedSet = new HashSet<>();
+  private int busy;
+  private int connected;
+  private boolean hungry;
+  private boolean stopped;
+  private boolean failed;
+  private int[] solution;
+  private long nodes;
+
+  /**
+   * This class represents a unit of work: a position to search and the moves that lead to it from
+   * the start of the search, packed as taken by MarbleModel.applyMoves.
+   */
+  static final class Unit {
+
+    private final int[] moves;
+    private final PackedPosition position;
+
+    /**
+     * This is the constructor of the Unit class.
+     *
+     * @param moves the packed moves from the start of the search to the position.
+     * @param position the position to search.
+     */
+    Unit(int[] moves, PackedPosition position) {
+
+      this.moves = moves;
+      this.position = position;
+    }
+
+    /**
+     * Return the packed moves from the start of the search to the position.
+     *
+     * @return the packed moves that lead to the position.
+     */
+    int[] getMoves() {
+      return moves;
+    }
+
+    /**
+     * Return the position to search.
+     *
+     * @return the position to search.
+     */
+    PackedPosition getPosition() {
+      return position;
+    }
+
+    /**
+     * Write the unit to the given output.
+     *
+     * @param out the output.
+     * @throws IOException if the unit cannot be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+
+      out.writeInt(moves.length);
+      for (int value : moves) {
+        out.writeInt(value);
+      }
+      position.writeTo(out);
+    }
+
+    /**
+     * Read a unit from the given input.
+     *
+     * @param in the input.
+     * @param words the number of words of a position.
+     * @return the unit that was read.
+     * @throws IOException if the unit cannot be read.
+     */
+    static Unit readFrom(DataInput in, int words) throws IOException {
+
+      int[] moves = new int[in.readInt()];
+      for (int i = 0; i < moves.length; i++) {
+        moves[i] = in.readInt();
+      }
+      return new Unit(moves, PackedPosition.readFrom(in, words));
+    }
+  }
+
+  /**
+   * This is the constructor of the MarbleSolverCoordinator class.
+   *
+   * @param workers the number of worker processes.
+   * @throws IllegalArgumentException if the number of workers is not positive.
+   */
+  public MarbleSolverCoordinator(int workers) throws IllegalArgumentException {
+
+    if (workers < 1) {
+      throw new IllegalArgumentException("The number of workers must be positive.");
+    }
+
+    this.workers = workers;
+  }
+
+  /**
+   * Search for a solution from the current position of the given game with the worker processes.
+   * A coordinator can only be used for one search.
+   *
+   * @param model the game.
+   * @return the result of the search, with the number of positions searched by all the workers.
+   * @throws IllegalArgumentException if the model is null.
+   * @throws IllegalStateException if the coordinator has already been used.
+   * @throws IOException if the workers cannot be started, do not connect, or all stop before the
+   *     search is over.
+   * @throws InterruptedException if the search is interrupted.
+   */
+  public MarbleSolver.Solution solve(MarbleModel model)
+      throws IllegalArgumentException, IOException, InterruptedException {
+
+    PackedPosition start = PackedPosition.of(model);
+    BoardTopology topology = PackedPosition.topologyOf(model);
+
+    synchronized (this) {
+      if (stopped || !queue.isEmpty()) {
+        throw new IllegalStateException("The coordinator has already been used.");
+      }
+      split(topology, start);
+      if (stopped) {
+        return result();
+      }
+    }
+
+    List<Process> processes = new ArrayList<>();
+    ExecutorService connections = MarbleServer.newConnectionExecutor();
+
+    synchronized (this) {
+      connected = workers;
+    }
+
+    try (ServerSocket serverSocket = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+      for (int i = 0; i < workers; i++) {
+        processes.add(startWorker(serverSocket.getLocalPort()));
+      }
+
+      serverSocket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+      for (int i = 0; i < workers; i++) {
+        Socket socket = serverSocket.accept();
+        connections.execute(() -> serve(socket, topology, start.count()));
+      }
+
+      // The connections notice workers that die, but a worker can also hang, so the processes are
+      // checked as well.
+      synchronized (this) {
+        while (!stopped) {
+          wait(CHECK_INTERVAL_MILLIS);
+          if (!stopped && processes.stream().noneMatch(Process::isAlive)) {
+            failed = true;
+            stop();
+          }
+        }
+      }
+    }
+
+    finally {
+      connections.shutdown();
+      for (Process process : processes) {
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+          process.destroyForcibly();
+        }
+      }
+    }
+
+    synchronized (this) {
+      if (failed) {
+        throw new IOException("All the workers stopped before the search was over.");
+      }
+      return result();
+    }
+  }
+
+  /**
+   * Play the first moves from the start, one level at a time, until a level has enough positions
+   * for every worker to take a few. Symmetric positions of a level are only kept once. The search
+   * stops at once if a solution is found on the way or no position is left.
+   *
+   * @param topology the topology of the board.
+   * @param start the position to start from.
+   */
+  private void split(BoardTopology topology, PackedPosition start) {
+
+    int[] triples = topology.getTriples();
+    int[][] symmetries = topology.getSymmetries();
+    List<Unit> level = new ArrayList<>();
+    level.add(new Unit(new int[0], start));
+
+    while (!level.isEmpty() && level.size() < UNITS_PER_WORKER * workers) {
+      Map<PackedPosition, Unit> next = new HashMap<>();
+      for (Unit unit : level) {
+        nodes++;
+        if (unit.getPosition().count() == 1) {
+          solution = unit.getMoves();
+          stopped = true;
+          return;
+        }
+        for (int t = 0; t < triples.length; t += 3) {
+          if (unit.getPosition().canJump(triples, t)) {
+            PackedPosition child = unit.getPosition().jump(triples, t);
+            next.putIfAbsent(child.canonical(symmetries),
+                new Unit(append(unit.getMoves(), topology, triples, t), child));
+          }
+        }
+      }
+      level = new ArrayList<>(next.values());
+    }
+
+    queue.addAll(level);
+    stopped = level.isEmpty();
+  }
+
+  /**
+   * Return a new worker process that connects to the given port.
+   *
+   * @param port the port of the coordinator.
+   * @return the worker process.
+   * @throws IOException if the process cannot be started.
+   */
+  private Process startWorker(int port) throws IOException {
+
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        MarbleSolverWorker.class.getName(), String.valueOf(port));
+    builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+    builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    builder.directory(new File(System.getProperty("user.dir")));
+    return builder.start();
+  }
+
+  /**
+   * Serve the messages of one worker until it disconnects. If the worker disconnects in the middle
+   * of a unit, the unit is put back for the other workers. If it was the last worker and the search
+   * is not over, the search fails.
+   *
+   * @param socket the socket of the worker.
+   * @param topology the topology of the board.
+   * @param marbles the number of marbles of the start of the search.
+   */
+  private void serve(Socket socket, BoardTopology topology, int marbles) {
+
+    int words = PackedPosition.words(topology);
+    int cursor = 0;
+    Unit current = null;
+
+    try (Socket s = socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            s.getOutputStream()))) {
+
+      out.writeInt(topology.getShape().ordinal());
+      out.writeInt(topology.getArmSize());
+      out.writeInt(marbles - SHARED_DEPTH);
+      out.flush();
+
+      while (true) {
+        byte opcode = in.readByte();
+
+        // The replies are decided under the lock and written after it, so a slow worker never
+        // holds up the others.
+        if (opcode == REQUEST) {
+          byte reply;
+          synchronized (this) {
+            current = null;
+            if (!stopped && queue.isEmpty() && busy == 0) {
+              stop();
+            }
+            if (stopped) {
+              reply = STOP;
+            }
+            else if (queue.isEmpty()) {
+              hungry = true;
+              reply = WAIT;
+            }
+            else {
+              current = queue.poll();
+              busy++;
+              reply = UNIT;
+            }
+          }
+          out.writeByte(reply);
+          if (reply == UNIT) {
+            current.writeTo(out);
+          }
+        }
+
+        else if (opcode == SYNC) {
+          long searched = in.readLong();
+          int count = in.readInt();
+          List<PackedPosition> dead = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            dead.add(PackedPosition.readFrom(in, words));
+          }
+          List<PackedPosition> news;
+          int flags;
+          synchronized (this) {
+            nodes += searched;
+            for (PackedPosition position : dead) {
+              if (sharedSet.add(position)) {
+                sharedDead.add(position);
+              }
+            }
+            news = new ArrayList<>(sharedDead.subList(cursor, sharedDead.size()));
+            cursor = sharedDead.size();
+            flags = (hungry ? DONATE_FLAG : 0) | (stopped ? STOP_FLAG : 0);
+          }
+          out.writeInt(news.size());
+          for (PackedPosition position : news) {
+            position.writeTo(out);
+          }
+          out.writeByte(flags);
+        }
+
+        else if (opcode == DONATE) {
+          int count = in.readInt();
+          List<Unit> units = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            units.add(Unit.readFrom(in, words));
+          }
+          synchronized (this) {
+            queue.addAll(units);
+            hungry = false;
+          }
+          continue;
+        }
+
+        else if (opcode == FINISHED || opcode == SOLVED) {
+          long searched = in.readLong();
+          int[] moves = null;
+          if (opcode == SOLVED) {
+            moves = new int[in.readInt()];
+            for (int i = 0; i < moves.length; i++) {
+              moves[i] = in.readInt();
+            }
+          }
+          synchronized (this) {
+            nodes += searched;
+            busy--;
+            current = null;
+            if (moves != null && solution == null) {
+              solution = moves;
+              stop();
+            }
+          }
+          continue;
+        }
+
+        else {
+          throw new IOException("Unknown opcode " + opcode + ".");
+        }
+
+        out.flush();
+      }
+    }
+
+    catch (IOException e) {
+      synchronized (this) {
+        if (current != null) {
+          queue.addFirst(current);
+          busy--;
+        }
+        if (!stopped && queue.isEmpty() && busy == 0) {
+          stop();
+        }
+      }
+    }
+
+    finally {
+      synchronized (this) {
+        connected--;
+        if (!stopped && connected == 0) {
+          failed = true;
+          stop();
+        }
+      }
+    }
+  }
+
+  /**
+   * Stop the search and wake up the thread waiting for its result. It must be called while holding
+   * the lock of the coordinator.
+   */
+  private void stop() {
+
+    stopped = true;
+    notifyAll();
+  }
+
+  /**
+   * Return the result of a finished search. It must be called while holding the lock of the
+   * coordinator.
+   *
+   * @return the result of the search.
+   */
+  private MarbleSolver.Solution result() {
+
+    if (solution == null) {
+      return new MarbleSolver.Solution(null, nodes);
+    }
+
+    List<int[]> moves = new ArrayList<>();
+    for (int i = 0; i < solution.length; i += 4) {
+      moves.add(Arrays.copyOfRange(solution, i, i + 4));
+    }
+    return new MarbleSolver.Solution(moves, nodes);
+  }
+
+  /**
+   * Return the given packed moves followed by jump t of the given table of (from, over, to)
+   * triples.
+   *
+   * @param moves the packed moves.
+   * @param topology the topology of the board.
+   * @param triples the jumps of the board.
+   * @param t the index of the first cell of the jump in the table.
+   * @return the packed moves with the jump appended.
+   */
+  static int[] append(int[] moves, BoardTopology topology, int[] triples, int t) {
+
+    int[] longer = Arrays.copyOf(moves, moves.length + 4);
+    longer[moves.length] = topology.rowOf(triples[t]);
+    longer[moves.length + 1] = topology.colOf(triples[t]);
+    longer[moves.length + 2] = topology.rowOf(triples[t + 2]);
+    longer[moves.length + 3] = topology.colOf(triples[t + 2]);
+    return longer;
+  }
+
+  /**
+   * Solve the English board that starts with the given empty slot with the given number of worker
+   * processes, and print the solution.
+   *
+   * @param args the number of workers, the arm thickness and the row and column of the empty slot.
+   * @throws Exception if the workers cannot be started or the search is interrupted.
+   */
+  public static void main(String[] args) throws Exception {
+
+    int workers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int armSize = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    int sRow = args.length > 3 ? Integer.parseInt(args[2]) : armSize;
+    int sCol = args.length > 3 ? Integer.parseInt(args[3]) : armSize;
+
+    long start = System.nanoTime();
+    MarbleSolver.Solution solution = new MarbleSolverCoordinator(workers).solve(
+        MarbleModelFactory.create(armSize, sRow, sCol));
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    if (solution.isSolved()) {
+      for (int[] move : solution.getMoves()) {
+        System.out.println(Arrays.toString(move));
+      }
+    }
+
+    System.out.println((solution.isSolved() ? "Solved" : "No solution") + " after "
+        + solution.getNodes() + " positions (" + millis + " ms)");
+  }
+
+}
@@ -0,0 +1,323 @@
+package marbleMVC;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents a worker process of a MarbleSolverCoordinator. It connects to the
+ * coordinator over the loopback address, takes units of work one at a time and searches each of
+ * them depth first, remembering dead positions in canonical form as MarbleSolver does.
+ *
+ * The search keeps its own stack instead of recursing, so it can stop at any node. Every
+ * SYNC_INTERVAL positions it sends the coordinator the dead positions it found that have enough
+ * marbles to be worth sharing, and receives those found by the other workers. If the coordinator
+ * asks for work, the untried moves of the frame nearest to the root are given away as new units.
+ *
+ * Usage: MarbleSolverWorker port. It is started by MarbleSolverCoordinator.
+ */
+public final class MarbleSolverWorker {
+
+  private static final int SYNC_INTERVAL = 100_000;
+
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final BoardTopology topology;
+  private final int[] triples;
+  private final int[][] symmetries;
+  private final int words;
+  private final int sharedMarbles;
+  private final Set<PackedPosition> dead = new HashSet<>();
+  private final List<PackedPosition> newDead = new ArrayList<>();
+  private long nodes;
+  private long reported;
+  private boolean stopped;
+
+  /**
+   * This is the constructor of the MarbleSolverWorker class. It reads the board and the sharing
+   * threshold sent by the coordinator.
+   *
+   * @param in the input from the coordinator.
+   * @param out the output to the coordinator.
+   * @throws IOException if the coordinator cannot be read.
+   */
+  MarbleSolverWorker(DataInputStream in, DataOutputStream out) throws IOException {
+
+    this.in = in;
+    this.out = out;
+    this.topology = BoardTopology.of(BoardShape.values()[in.readInt()], in.readInt());
+    this.triples = topology.getTriples();
+    this.symmetries = topology.getSymmetries();
+    this.words = PackedPosition.words(topology);
+    this.sharedMarbles = in.readInt();
+  }
+
+  /**
+   * Take units from the coordinator and search them until the coordinator stops the search.
+   *
+   * @throws IOException if the connection fails.
+   * @throws InterruptedException if the worker is interrupted while waiting for work.
+   */
+  void run() throws IOException, InterruptedException {
+
+    while (true) {
+      out.writeByte(MarbleSolverCoordinator.REQUEST);
+      out.flush();
+      byte reply = in.readByte();
+
+      if (reply == MarbleSolverCoordinator.STOP) {
+        return;
+      }
+
+      if (reply == MarbleSolverCoordinator.WAIT) {
+        Thread.sleep(10);
+        continue;
+      }
+
+      search(MarbleSolverCoordinator.Unit.readFrom(in, words));
+    }
+  }
+
+  /**
+   * Search one unit depth first and report the result to the coordinator, unless the search was
+   * stopped in the middle.
+   *
+   * @param unit the unit.
+   * @throws IOException if the connection fails.
+   */
+  private void search(MarbleSolverCoordinator.Unit unit) throws IOException {
+
+    int maxDepth = unit.getPosition().count();
+    PackedPosition[] positions = new PackedPosition[maxDepth];
+    int[] next = new int[maxDepth];
+    int[] via = new int[maxDepth];
+    boolean[] donated = new boolean[maxDepth];
+    int depth = 0;
+    positions[0] = unit.getPosition();
+    nodes++;
+
+    if (positions[0].count() == 1) {
+      solved(unit.getMoves());
+      return;
+    }
+
+    if (dead.contains(positions[0].canonical(symmetries))) {
+      depth = -1;
+    }
+
+    while (depth >= 0) {
+
+      if (nodes - reported >= SYNC_INTERVAL) {
+        if (sync()) {
+          donate(unit, positions, next, via, donated, depth);
+        }
+        if (stopped) {
+          return;
+        }
+      }
+
+      PackedPosition position = positions[depth];
+      int t = next[depth];
+      while (t < triples.length && !position.canJump(triples, t)) {
+        t += 3;
+      }
+
+      if (t >= triples.length) {
+        // Every move from here has been tried; it is dead unless some were given away.
+        if (donated[depth]) {
+          if (depth > 0) {
+            donated[depth - 1] = true;
+          }
+        }
+        else {
+          markDead(position.canonical(symmetries), position.count());
+        }
+        depth--;
+        continue;
+      }
+
+      next[depth] = t + 3;
+      PackedPosition child = position.jump(triples, t);
+      nodes++;
+
+      if (child.count() == 1) {
+        via[depth + 1] = t;
+        solved(path(unit, via, depth + 1));
+        return;
+      }
+
+      if (!dead.contains(child.canonical(symmetries))) {
+        depth++;
+        positions[depth] = child;
+        next[depth] = 0;
+        via[depth] = t;
+        donated[depth] = false;
+      }
+    }
+
+    sync();
+    out.writeByte(MarbleSolverCoordinator.FINISHED);
+    out.writeLong(unreported());
+    out.flush();
+  }
+
+  /**
+   * Remember a dead position, and keep it to share if it has enough marbles.
+   *
+   * @param key the canonical form of the position.
+   * @param marbles the number of marbles of the position.
+   */
+  private void markDead(PackedPosition key, int marbles) {
+
+    if (dead.add(key) && marbles >= sharedMarbles) {
+      newDead.add(key);
+    }
+  }
+
+  /**
+   * Send the dead positions found since the last sync and the number of positions searched, and
+   * add the dead positions found by the other workers.
+   *
+   * @return true if the coordinator asks for work, false otherwise.
+   * @throws IOException if the connection fails.
+   */
+  private boolean sync() throws IOException {
+
+    out.writeByte(MarbleSolverCoordinator.SYNC);
+    out.writeLong(unreported());
+    out.writeInt(newDead.size());
+    for (PackedPosition position : newDead) {
+      position.writeTo(out);
+    }
+    out.flush();
+    newDead.clear();
+
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      dead.add(PackedPosition.readFrom(in, words));
+    }
+
+    byte flags = in.readByte();
+    stopped = (flags & MarbleSolverCoordinator.STOP_FLAG) != 0;
+    return (flags & MarbleSolverCoordinator.DONATE_FLAG) != 0;
+  }
+
+  /**
+   * Return the number of positions searched since they were last reported to the coordinator, and
+   * count them as reported.
+   *
+   * @return the number of positions searched since the last report.
+   */
+  private long unreported() {
+
+    long searched = nodes - reported;
+    reported = nodes;
+    return searched;
+  }
+
+  /**
+   * Give the untried moves of the frame nearest to the root away as new units. The frame and all
+   * the frames above it are marked, so they are not taken to be dead when they are left.
+   *
+   * @param unit the unit being searched.
+   * @param positions the positions of the frames.
+   * @param next the next move to try in every frame.
+   * @param via the move that leads to every frame.
+   * @param donated if every frame has given moves away.
+   * @param depth the depth of the current frame.
+   * @throws IOException if the connection fails.
+   */
+  private void donate(MarbleSolverCoordinator.Unit unit, PackedPosition[] positions, int[] next,
+      int[] via, boolean[] donated, int depth) throws IOException {
+
+    List<MarbleSolverCoordinator.Unit> units = new ArrayList<>();
+
+    for (int d = 0; d <= depth && units.isEmpty(); d++) {
+      int[] moves = path(unit, via, d);
+      for (int t = next[d]; t < triples.length; t += 3) {
+        if (positions[d].canJump(triples, t)) {
+          units.add(new MarbleSolverCoordinator.Unit(
+              MarbleSolverCoordinator.append(moves, topology, triples, t),
+              positions[d].jump(triples, t)));
+        }
+      }
+      if (!units.isEmpty()) {
+        next[d] = triples.length;
+        Arrays.fill(donated, 0, d + 1, true);
+      }
+    }
+
+    if (units.isEmpty()) {
+      return;
+    }
+
+    out.writeByte(MarbleSolverCoordinator.DONATE);
+    out.writeInt(units.size());
+    for (MarbleSolverCoordinator.Unit given : units) {
+      given.writeTo(out);
+    }
+    out.flush();
+  }
+
+  /**
+   * Return the packed moves from the start of the search to the frame at the given depth.
+   *
+   * @param unit the unit being searched.
+   * @param via the move that leads to every frame.
+   * @param depth the depth of the frame.
+   * @return the packed moves that lead to the frame.
+   */
+  private int[] path(MarbleSolverCoordinator.Unit unit, int[] via, int depth) {
+
+    int[] moves = unit.getMoves();
+    for (int d = 1; d <= depth; d++) {
+      moves = MarbleSolverCoordinator.append(moves, topology, triples, via[d]);
+    }
+    return moves;
+  }
+
+  /**
+   * Report a solution to the coordinator.
+   *
+   * @param moves the packed moves of the solution.
+   * @throws IOException if the connection fails.
+   */
+  private void solved(int[] moves) throws IOException {
+
+    out.writeByte(MarbleSolverCoordinator.SOLVED);
+    out.writeLong(unreported());
+    out.writeInt(moves.length);
+    for (int value : moves) {
+      out.writeInt(value);
+    }
+    out.flush();
+  }
+
+  /**
+   * Connect to the coordinator on the given port of the loopback address and work until the search
+   * is over.
+   *
+   * @param args the port of the coordinator.
+   * @throws Exception if the connection fails or the worker is interrupted.
+   */
+  public static void main(String[] args) throws Exception {
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            socket.getOutputStream()))) {
+      new MarbleSolverWorker(in, out).run();
+    }
+  }
+
+}
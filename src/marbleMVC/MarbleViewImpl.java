@@ -12,6 +12,11 @@ import javax.swing.JPanel;
 /**
  * This class represents MarbleView Implementation. It is a child class of the JFrame class, which
  * creates the user interface for the player.
+ *
+ * Updates of the cells and of the score board are not drawn at once but collected by a
+ * MarbleRenderScheduler and drawn at most once per frame, so the view keeps up with moves made
+ * faster than the screen refreshes. The new status of a cell is read from the controller by the
+ * thread that updates it, so the drawing on the event dispatch thread never reads the model.
  */
 public class MarbleViewImpl extends JFrame implements MarbleView {
 
@@ -23,20 +28,53 @@ public class MarbleViewImpl extends JFrame implements MarbleView {
   private final JPanel gameBoard = new JPanel();
   private final JPanel headBoard = new JPanel();
   private final JLabel instructionLabel = new JLabel();
+  private final JButton replayButton = new JButton();
+  private final MarbleRenderScheduler scheduler;
 
   private JButton[] buttons;
   private MarbleController controller = null;
   private int boardSize;
+  static final int DEFAULT_FRAMES_PER_SECOND = 60;
   private final int FRAME_SIZE = 500;
   private final Color BACKGROUND_COLOR = new Color(121, 166, 217);
 
 
   /**
    * This is the constructor of the MarbleViewImpl. It sets up basic settings for the frame, and
-   * add different panels to the frame.
+   * add different panels to the frame. The view is drawn at most 60 times per second.
    */
   public MarbleViewImpl() {
 
+    this(DEFAULT_FRAMES_PER_SECOND);
+  }
+
+  /**
+   * This is the second constructor of the MarbleViewImpl. It sets up basic settings for the frame,
+   * and add different panels to the frame. The view is drawn at most the given number of times per
+   * second.
+   *
+   * @param framesPerSecond the most frames drawn per second.
+   * @throws IllegalArgumentException if the number of frames per second is not positive.
+   */
+  public MarbleViewImpl(int framesPerSecond) throws IllegalArgumentException {
+
+    this(framesPerSecond, null);
+  }
+
+  /**
+   * This is the third constructor of the MarbleViewImpl. It sets up basic settings for the frame,
+   * and add different panels to the frame. The view is drawn at most the given number of times per
+   * second, and the time of drawing every frame is added to the given metrics.
+   *
+   * @param framesPerSecond the most frames drawn per second.
+   * @param metrics the metrics to update, or null to only emit flight recorder events.
+   * @throws IllegalArgumentException if the number of frames per second is not positive.
+   */
+  public MarbleViewImpl(int framesPerSecond, MarbleMetrics metrics)
+      throws IllegalArgumentException {
+
+    this.scheduler = new MarbleRenderScheduler(framesPerSecond, this::drawCell, this::drawInfo,
+        metrics);
     this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     this.setSize(FRAME_SIZE, FRAME_SIZE);
     this.setBackground(BACKGROUND_COLOR);
@@ -96,7 +134,7 @@ public class MarbleViewImpl extends JFrame implements MarbleView {
 
   /**
    * This method sets up the score board of the game. The score board shows the current score of the
-   * game and if the game is over.
+   * game and if the game is over, and a button that opens the replay of the moves made so far.
    */
   private void setScoreBoard() {
 
@@ -107,8 +145,14 @@ public class MarbleViewImpl extends JFrame implements MarbleView {
     scoreLabel.setOpaque(true);
     scoreLabel.setText(controller.passToScoreBoard());
 
+    replayButton.setFont(new Font("Arial", Font.BOLD,15));
+    replayButton.setFocusable(false);
+    replayButton.setText("Replay");
+    replayButton.addActionListener(e -> {new MarbleReplayFrame(controller.getReplay());});
+
     scoreBoard.setBackground(BACKGROUND_COLOR);
     scoreBoard.add(scoreLabel);
+    scoreBoard.add(replayButton);
   }
 
 
@@ -131,29 +175,46 @@ public class MarbleViewImpl extends JFrame implements MarbleView {
       buttons[i].setBackground(Color.WHITE);
       buttons[i].setFont(new Font("Arial", Font.BOLD, fontSize));
       buttons[i].setFocusable(false);
-      updateCell(i);
       int row = i / boardSize;
       int col = i % boardSize;
+      drawCell(controller.getCellStatus(row, col), i);
       buttons[i].addActionListener(e -> {controller.recordPosition(row, col);});
     }
   }
 
   /**
    * This method updates the cells in the view according to the CellStatus provided by the controller.
-   * The forbidden cells are set to invisible in the frame.
+   * The forbidden cells are set to invisible in the frame. The status is read now, and the cell is
+   * drawn with it in the next frame.
    *
    * @param buttonIndex the index number of the button that needs to be updated.
    */
   public void updateCell(int buttonIndex) {
+    scheduler.markCell(buttonIndex,
+        controller.getCellStatus(buttonIndex / boardSize, buttonIndex % boardSize));
+  }
+
+  /**
+   * This method updates the text provided by the controller in the scoreboard. The text is read
+   * now, and the scoreboard is drawn with it in the next frame.
+   */
+  public void updateInfo() {
+    scheduler.markInfo(controller.passToScoreBoard());
+  }
 
-    int row = buttonIndex / boardSize;
-    int col = buttonIndex % boardSize;
+  /**
+   * Draw a cell with the given CellStatus.
+   *
+   * @param status the status of the cell.
+   * @param buttonIndex the index number of the button to draw.
+   */
+  private void drawCell(CellStatus status, int buttonIndex) {
 
-    if (controller.getCellStatus(row, col) == CellStatus.FORBIDDEN) {
+    if (status == CellStatus.FORBIDDEN) {
       buttons[buttonIndex].setVisible(false);
     }
 
-    else if (controller.getCellStatus(row, col) == CellStatus.OCCUPIED) {
+    else if (status == CellStatus.OCCUPIED) {
         buttons[buttonIndex].setText("O");
     }
 
@@ -163,10 +224,12 @@ public class MarbleViewImpl extends JFrame implements MarbleView {
   }
 
   /**
-   * This method updates the text provided by the controller in the scoreboard
+   * Draw the given text in the scoreboard.
+   *
+   * @param text the text provided by the controller.
    */
-  public void updateInfo() {
-    scoreLabel.setText(controller.passToScoreBoard());
+  private void drawInfo(String text) {
+    scoreLabel.setText(text);
   }
 
   /**
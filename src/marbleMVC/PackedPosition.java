@@ -0,0 +1,260 @@
+package marbleMVC;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This class represents a position of a game as an immutable set of bits, one for every cell of a
+ * BoardTopology, for the tools that work with millions of positions at once. Bit i is set if cell i
+ * holds a marble. Two positions are equal if they have the same marbles.
+ */
+public final class PackedPosition {
+
+  private final long[] words;
+  private final int hash;
+
+  /**
+   * This is the constructor of the PackedPosition class. The words are not copied.
+   *
+   * @param words the packed marbles of the position.
+   */
+  PackedPosition(long[] words) {
+
+    this.words = words;
+    this.hash = mix(Arrays.hashCode(words));
+  }
+
+  /**
+   * Return the position of the given game. Models other than MarbleModelImpl are taken to be
+   * played on the English board.
+   *
+   * @param model the game.
+   * @return the position of the game.
+   * @throws IllegalArgumentException if the model is null.
+   */
+  public static PackedPosition of(MarbleModel model) throws IllegalArgumentException {
+
+    if (model == null) {
+      throw new IllegalArgumentException("The model is invalid.");
+    }
+
+    if (model instanceof MarbleModelImpl) {
+      return new PackedPosition(((MarbleModelImpl) model).packOccupied());
+    }
+
+    return new PackedPosition(MarbleSnapshot.of(model).toModel().packOccupied());
+  }
+
+  /**
+   * Return the topology of the board of the given game, as used by of.
+   *
+   * @param model the game.
+   * @return the topology of the board of the game.
+   */
+  static BoardTopology topologyOf(MarbleModel model) {
+
+    if (model instanceof MarbleModelImpl) {
+      return ((MarbleModelImpl) model).getTopology();
+    }
+
+    return BoardTopology.of(BoardShape.ENGLISH, model.getArmSize());
+  }
+
+  /**
+   * Return the number of words needed for the cells of the given board.
+   *
+   * @param topology the topology of the board.
+   * @return the number of words needed for the cells of the board.
+   */
+  static int words(BoardTopology topology) {
+    return (topology.getCellCount() + 63) >>> 6;
+  }
+
+  /**
+   * Determine if the given cell holds a marble.
+   *
+   * @param cell the number of the cell.
+   * @return true if the cell holds a marble, false otherwise.
+   */
+  public boolean has(int cell) {
+    return (words[cell >>> 6] & (1L << cell)) != 0;
+  }
+
+  /**
+   * Determine if jump t of the given table of (from, over, to) triples can be made.
+   *
+   * @param triples the jumps of the board.
+   * @param t the index of the first cell of the jump in the table.
+   * @return true if the jump can be made, false otherwise.
+   */
+  boolean canJump(int[] triples, int t) {
+    return has(triples[t]) && has(triples[t + 1]) && !has(triples[t + 2]);
+  }
+
+  /**
+   * Return the position after jump t of the given table of (from, over, to) triples. The jump is
+   * not checked.
+   *
+   * @param triples the jumps of the board.
+   * @param t the index of the first cell of the jump in the table.
+   * @return the position after the jump.
+   */
+  PackedPosition jump(int[] triples, int t) {
+
+    long[] next = words.clone();
+    for (int i = 0; i < 3; i++) {
+      int cell = triples[t + i];
+      next[cell >>> 6] ^= 1L << cell;
+    }
+    return new PackedPosition(next);
+  }
+
+  /**
+   * Determine if any jump of the given table of (from, over, to) triples can be made.
+   *
+   * @param triples the jumps of the board.
+   * @return true if a marble can jump, false otherwise.
+   */
+  boolean hasJump(int[] triples) {
+
+    for (int t = 0; t < triples.length; t += 3) {
+      if (canJump(triples, t)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Return the canonical form of this position: of all the positions it is turned into by the
+   * symmetries of the board, the one with the smallest words. Symmetric positions have the same
+   * canonical form.
+   *
+   * @param symmetries the symmetries of the board, as permutations of its cells.
+   * @return the canonical form of this position.
+   */
+  PackedPosition canonical(int[][] symmetries) {
+
+    long[] best = words;
+
+    for (int s = 1; s < symmetries.length; s++) {
+      long[] image = new long[words.length];
+      for (int cell = 0; cell < symmetries[s].length; cell++) {
+        if (has(cell)) {
+          int target = symmetries[s][cell];
+          image[target >>> 6] |= 1L << target;
+        }
+      }
+      if (Arrays.compare(image, best) < 0) {
+        best = image;
+      }
+    }
+
+    return best == words ? this : new PackedPosition(best);
+  }
+
+  /**
+   * Return the number of marbles of the position.
+   *
+   * @return the number of marbles of the position.
+   */
+  public int count() {
+
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * Return a new game on the given board with the marbles of this position.
+   *
+   * @param topology the topology of the board.
+   * @return a new game with the marbles of this position.
+   */
+  public MarbleModelImpl toModel(BoardTopology topology) {
+    return new MarbleModelImpl(topology, words.clone(), count());
+  }
+
+  /**
+   * Write the words of this position to the given output.
+   *
+   * @param out the output.
+   * @throws IOException if the position cannot be written.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+
+    for (long word : words) {
+      out.writeLong(word);
+    }
+  }
+
+  /**
+   * Read a position of the given number of words from the given input.
+   *
+   * @param in the input.
+   * @param length the number of words of the position.
+   * @return the position that was read.
+   * @throws IOException if the position cannot be read.
+   */
+  public static PackedPosition readFrom(DataInput in, int length) throws IOException {
+
+    long[] words = new long[length];
+    for (int i = 0; i < length; i++) {
+      words[i] = in.readLong();
+    }
+    return new PackedPosition(words);
+  }
+
+  /**
+   * Spread the bits of a hash code, so that positions that differ in a few cells fall into
+   * different partitions of a hash table.
+   *
+   * @param h the hash code.
+   * @return the mixed hash code.
+   */
+  private static int mix(int h) {
+
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    return h ^ (h >>> 16);
+
+  }
+
+  /**
+   * Determine if the given object is a position with the same marbles.
+   *
+   * @param o the object to compare with.
+   * @return true if the object is a position with the same marbles, false otherwise.
+   */
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof PackedPosition && Arrays.equals(words, ((PackedPosition) o).words);
+  }
+
+  /**
+   * Return the hash code of this position.
+   *
+   * @return the hash code of this position.
+   */
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  /**
+   * Return the words of this position as a string.
+   *
+   * @return the words of this position as a string.
+   */
+  @Override
+  public String toString() {
+    return Arrays.toString(words);
+  }
+
+}